@@ -10,6 +10,7 @@ import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.data.category.DefaultCategoryDataset;
 
 import java.awt.*;
+import java.util.Map;
 
 public class BarChart extends Chart {
     private DefaultCategoryDataset barChartData;
@@ -17,6 +18,17 @@ public class BarChart extends Chart {
     private CategoryPlot barCategoryPlot;
     private String xLabel = "";
     private String yLabel = "";
+    private final CategoryIndex categories = new CategoryIndex() {
+        @Override
+        protected void setValue(String category, Number value) {
+            barChartData.setValue(value, yLabel, category);
+        }
+
+        @Override
+        protected void removeValue(String category) {
+            barChartData.removeColumn(category);
+        }
+    };
 
     public BarChart(String title, boolean hasLegend) {
         super(title, hasLegend);
@@ -42,8 +54,27 @@ public class BarChart extends Chart {
 
     @Override
     public void build(DataFrame data, String xLabel, String yLabel) {
-        for (int i = 0; i < data.getData().get(xLabel).size() - 1; i++) {
-            addValue((Double) data.getData().get(yLabel).get(i), (String) data.getData().get(xLabel).get(i));
+        // Набор заполняется без событий, в конце рассылается одно
+        barChartData.setNotify(false);
+        try {
+            categories.build(data, xLabel, yLabel);
+        } finally {
+            barChartData.setNotify(true);
+        }
+    }
+
+    @Override
+    protected JFreeChart getJFreeChart() {
+        return barChart;
+    }
+
+    @Override
+    protected void updateDataset(DataFrame data, String xLabel, String yLabel, Map<Integer, Object[]> changedRows) {
+        barChartData.setNotify(false);
+        try {
+            categories.update(data, xLabel, yLabel, changedRows);
+        } finally {
+            barChartData.setNotify(true);
         }
     }
 }
@@ -0,0 +1,132 @@
+package charts;
+
+import data.DataFrame;
+import data.column.Column;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+// Категории столбчатой и круговой диаграмм: значение категории берется из последней строки
+// с этой категорией, а порядок в наборе - по первой строке (так заполняет набор данных построение).
+// Индекс первых и последних строк позволяет обновлять набор по одной строке, просматривая таблицу
+// только когда категория уходит из своей первой или последней строки
+abstract class CategoryIndex {
+    private final HashMap<String, Integer> firstRows = new HashMap<>();
+    private final HashMap<String, Integer> lastRows = new HashMap<>();
+    // Категории в наборе данных в порядке добавления
+    private final ArrayList<String> shown = new ArrayList<>();
+    private int rowCount;
+
+    protected abstract void setValue(String category, Number value);
+
+    protected abstract void removeValue(String category);
+
+    // Сначала находятся первые и последние строки категорий, затем каждая категория получает значение
+    // один раз, в порядке первого появления. Последняя строка таблицы в диаграмму не входит
+    void build(DataFrame data, String xLabel, String yLabel) {
+        Column x = data.getColumn(xLabel);
+        Column y = data.getColumn(yLabel);
+        rowCount = x.size() - 1;
+        for (int i = 0; i < rowCount; i++) {
+            Object category = x.get(i);
+            if (!(category instanceof String)) continue;
+            firstRows.putIfAbsent((String) category, i);
+            lastRows.put((String) category, i);
+        }
+        reorder(y);
+    }
+
+    // Пакет правок строк (строка -> {старый x, старый y})
+    void update(DataFrame data, String xLabel, String yLabel, Map<Integer, Object[]> changedRows) {
+        for (Map.Entry<Integer, Object[]> change : changedRows.entrySet()) {
+            update(data, xLabel, yLabel, change.getKey(), change.getValue()[0]);
+        }
+    }
+
+    void update(DataFrame data, String xLabel, String yLabel, int row, Object oldX) {
+        if (row >= rowCount) return;
+        Column x = data.getColumn(xLabel);
+        Column y = data.getColumn(yLabel);
+        Object category = x.get(row);
+        boolean reordered = false;
+        if (oldX instanceof String && !oldX.equals(category)) reordered = leave(x, y, (String) oldX, row);
+        if (category instanceof String) reordered |= enter(y, (String) category, row);
+        if (reordered) reorder(y);
+    }
+
+    // Строка row больше не относится к категории: если это была ее крайняя строка, ищется
+    // следующая; без строк категория уходит из индекса. Возвращает true, если сменилась первая строка
+    private boolean leave(Column x, Column y, String category, int row) {
+        Integer first = firstRows.get(category);
+        if (first == null) return false;
+        int last = lastRows.get(category);
+        if (last == row) {
+            int previous = find(x, category, row - 1, first - 1, -1);
+            if (previous < 0) return remove(category);
+            lastRows.put(category, previous);
+            setValue(category, number(y, previous));
+        }
+        if (first == row) {
+            int next = find(x, category, row + 1, lastRows.get(category) + 1, 1);
+            if (next < 0) return remove(category);
+            firstRows.put(category, next);
+            return true;
+        }
+        return false;
+    }
+
+    // Строка row теперь относится к категории; возвращает true, если категория новая или
+    // ее первая строка сдвинулась к началу
+    private boolean enter(Column y, String category, int row) {
+        Integer first = firstRows.get(category);
+        if (first == null) {
+            firstRows.put(category, row);
+            lastRows.put(category, row);
+            return true;
+        }
+        boolean moved = row < first;
+        if (moved) firstRows.put(category, row);
+        if (row >= lastRows.get(category)) {
+            lastRows.put(category, row);
+            setValue(category, number(y, row));
+        }
+        return moved;
+    }
+
+    private boolean remove(String category) {
+        firstRows.remove(category);
+        lastRows.remove(category);
+        return true;
+    }
+
+    // Набор приводится к порядку построения (по первой строке): категории начиная с первого
+    // расхождения удаляются и добавляются заново (новая категория в конце - одно добавление),
+    // таблица не просматривается
+    private void reorder(Column y) {
+        ArrayList<String> wanted = new ArrayList<>(firstRows.keySet());
+        wanted.sort(Comparator.comparingInt(firstRows::get));
+        int same = 0;
+        while (same < shown.size() && same < wanted.size() && shown.get(same).equals(wanted.get(same))) same++;
+        for (int i = shown.size() - 1; i >= same; i--) removeValue(shown.remove(i));
+        for (int i = same; i < wanted.size(); i++) {
+            String category = wanted.get(i);
+            setValue(category, number(y, lastRows.get(category)));
+            shown.add(category);
+        }
+    }
+
+    // Строка с категорией от from до to (не включая) с шагом step или -1
+    private static int find(Column x, String category, int from, int to, int step) {
+        for (int i = from; i != to; i += step) {
+            if (category.equals(x.get(i))) return i;
+        }
+        return -1;
+    }
+
+    private static Number number(Column y, int row) {
+        Object value = y.get(row);
+        return value instanceof Number ? (Number) value : null;
+    }
+}
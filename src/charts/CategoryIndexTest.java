@@ -0,0 +1,128 @@
+package charts;
+
+import data.DataFrame;
+import data.column.NumericColumn;
+import data.column.StringColumn;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CategoryIndexTest {
+
+    @org.junit.jupiter.api.Test
+    void testBuildOrdersByFirstRow() {
+        DataFrame data = table(new String[]{"b", "a", "b", "c", "a", "z"}, new double[]{1, 2, 3, 4, 5, 6});
+        Dataset dataset = new Dataset();
+        dataset.index.build(data, "x", "y");
+        // Значение - из последней строки категории, последняя строка таблицы не входит
+        assertEquals(List.of("b", "a", "c"), new ArrayList<>(dataset.values.keySet()));
+        assertEquals(3.0, dataset.values.get("b"));
+        assertEquals(5.0, dataset.values.get("a"));
+    }
+
+    // Новая категория в начале таблицы встает на место, которое дало бы построение
+    @org.junit.jupiter.api.Test
+    void testNewCategoryKeepsBuildOrder() {
+        DataFrame data = table(new String[]{"a", "b", "a", "c", "z"}, new double[]{1, 2, 3, 4, 5});
+        Dataset dataset = new Dataset();
+        dataset.index.build(data, "x", "y");
+        edit(data, dataset, Map.of(0, "новая"), Map.of());
+        assertEquals(List.of("новая", "b", "a", "c"), new ArrayList<>(dataset.values.keySet()));
+        assertEquals(built(data), dataset.values);
+    }
+
+    // Категория уходит из первой строки - ее место по следующей строке, без строк - удаляется
+    @org.junit.jupiter.api.Test
+    void testFirstRowMovesCategory() {
+        DataFrame data = table(new String[]{"a", "b", "c", "a", "z"}, new double[]{1, 2, 3, 4, 5});
+        Dataset dataset = new Dataset();
+        dataset.index.build(data, "x", "y");
+        edit(data, dataset, Map.of(0, "c"), Map.of());
+        assertEquals(List.of("c", "b", "a"), new ArrayList<>(dataset.values.keySet()));
+        edit(data, dataset, Map.of(1, "c"), Map.of());
+        assertEquals(List.of("c", "a"), new ArrayList<>(dataset.values.keySet()));
+        assertEquals(built(data), dataset.values);
+    }
+
+    // Случайные пакеты правок категорий и значений: набор после обновлений совпадает с построенным заново
+    @org.junit.jupiter.api.Test
+    void testRandomUpdatesMatchBuild() {
+        Random random = new Random(21);
+        int rows = 60;
+        String[] categories = new String[rows];
+        double[] values = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            categories[i] = "k" + random.nextInt(8);
+            values[i] = random.nextInt(100);
+        }
+        DataFrame data = table(categories, values);
+        Dataset dataset = new Dataset();
+        dataset.index.build(data, "x", "y");
+        for (int batch = 0; batch < 3000; batch++) {
+            Map<Integer, String> xEdits = new HashMap<>();
+            Map<Integer, Double> yEdits = new HashMap<>();
+            int size = 1 + random.nextInt(random.nextInt(10) == 0 ? 20 : 3);
+            for (int i = 0; i < size; i++) {
+                int row = random.nextInt(rows);
+                if (random.nextBoolean()) xEdits.put(row, "k" + random.nextInt(12));
+                else yEdits.put(row, (double) random.nextInt(100));
+            }
+            edit(data, dataset, xEdits, yEdits);
+            assertEquals(new ArrayList<>(built(data).entrySet()), new ArrayList<>(dataset.values.entrySet()), "пакет " + batch);
+        }
+    }
+
+    // Правки пишутся в таблицу, затем индекс обновляется по строкам, как в Chart.update
+    private static void edit(DataFrame data, Dataset dataset, Map<Integer, String> xEdits, Map<Integer, Double> yEdits) {
+        Map<Integer, Object> oldX = new HashMap<>();
+        for (Map.Entry<Integer, String> edit : xEdits.entrySet()) {
+            oldX.putIfAbsent(edit.getKey(), data.getColumn("x").get(edit.getKey()));
+            data.setValue("x", edit.getKey(), edit.getValue());
+        }
+        for (Map.Entry<Integer, Double> edit : yEdits.entrySet()) {
+            oldX.putIfAbsent(edit.getKey(), data.getColumn("x").get(edit.getKey()));
+            data.setValue("y", edit.getKey(), edit.getValue());
+        }
+        for (Map.Entry<Integer, Object> row : oldX.entrySet()) {
+            dataset.index.update(data, "x", "y", row.getKey(), row.getValue());
+        }
+    }
+
+    private static LinkedHashMap<String, Number> built(DataFrame data) {
+        Dataset dataset = new Dataset();
+        dataset.index.build(data, "x", "y");
+        return dataset.values;
+    }
+
+    private static DataFrame table(String[] categories, double[] values) {
+        StringColumn x = new StringColumn(categories.length);
+        NumericColumn y = new NumericColumn(values.length);
+        for (int i = 0; i < categories.length; i++) {
+            x.setString(i, categories[i]);
+            y.setDouble(i, values[i]);
+        }
+        return new DataFrame(new ArrayList<>(List.of("x", "y")), List.of(x, y));
+    }
+
+    // Набор данных, как у диаграмм: новое значение заменяет старое на его месте, новая категория - в конец
+    private static class Dataset {
+        private final LinkedHashMap<String, Number> values = new LinkedHashMap<>();
+        private final CategoryIndex index = new CategoryIndex() {
+            @Override
+            protected void setValue(String category, Number value) {
+                values.put(category, value);
+            }
+
+            @Override
+            protected void removeValue(String category) {
+                values.remove(category);
+            }
+        };
+    }
+}
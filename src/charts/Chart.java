@@ -3,9 +3,11 @@ package charts;
 import core.MainFrame;
 import data.DataFrame;
 import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.Map;
 
 public abstract class Chart extends JPanel {
     protected static final int CHART_WIDTH = (int) (0.5 * MainFrame.MAIN_FRAME_WIDTH);
@@ -51,6 +53,24 @@ public abstract class Chart extends JPanel {
 
     public abstract ChartPanel getChartPanel();
 
+    // Обновление построенного графика после правок строк (строка -> {старый x, старый y}):
+    // меняются только затронутые элементы набора данных, а события графика подавляются до конца
+    // пакета, так что панель перерисовывается один раз
+    public final void update(DataFrame data, String xLabel, String yLabel, Map<Integer, Object[]> changedRows) {
+        JFreeChart chart = getJFreeChart();
+        chart.setNotify(false);
+        try {
+            updateDataset(data, xLabel, yLabel, changedRows);
+        } finally {
+            chart.setNotify(true);
+        }
+    }
+
+    protected abstract JFreeChart getJFreeChart();
+
+    // Пакет правок применяется к набору данных целиком; набор рассылает не больше одного события
+    protected abstract void updateDataset(DataFrame data, String xLabel, String yLabel, Map<Integer, Object[]> changedRows);
+
 
     public final class ChartType {
         public static final int XY_CHART = 0;
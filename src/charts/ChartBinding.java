@@ -0,0 +1,53 @@
+package charts;
+
+import data.DataFrame;
+import data.DataFrameListener;
+import data.column.Column;
+
+import java.util.LinkedHashMap;
+
+// Связь построенного графика со столбцами осей DataFrame. Правки ячеек копятся вместе со
+// значениями строки до первой правки, а flush() после принятия правок обновляет график на месте
+class ChartBinding implements DataFrameListener {
+    private final Chart chart;
+    private final DataFrame data;
+    private final String xLabel;
+    private final String yLabel;
+    private final LinkedHashMap<Integer, Object[]> changedRows = new LinkedHashMap<>();
+
+    ChartBinding(Chart chart, DataFrame data, String xLabel, String yLabel) {
+        this.chart = chart;
+        this.data = data;
+        this.xLabel = xLabel;
+        this.yLabel = yLabel;
+        data.addListener(this);
+    }
+
+    boolean isBoundTo(DataFrame data) {
+        return this.data == data;
+    }
+
+    @Override
+    public void valueChanged(String key, int row, Object oldValue, Object newValue) {
+        if (!key.equals(xLabel) && !key.equals(yLabel)) return;
+        if (changedRows.containsKey(row)) return;
+        Object oldX = key.equals(xLabel) ? oldValue : valueAt(xLabel, row);
+        Object oldY = key.equals(yLabel) ? oldValue : valueAt(yLabel, row);
+        changedRows.put(row, new Object[]{oldX, oldY});
+    }
+
+    void flush() {
+        if (changedRows.isEmpty()) return;
+        chart.update(data, xLabel, yLabel, changedRows);
+        changedRows.clear();
+    }
+
+    void detach() {
+        data.removeListener(this);
+    }
+
+    private Object valueAt(String key, int row) {
+        Column column = data.getColumn(key);
+        return row < column.size() ? column.get(row) : null;
+    }
+}
@@ -41,6 +41,9 @@ class PieChart3DCreator extends Creator {
 
 public class ChartFactory {
     private static ArrayList<Object> chartConfiguration = new ArrayList<>();
+    // Связь последнего построенного графика с его таблицей
+    private static ChartBinding binding;
+
     public static Chart createChart(int chartType, String title, DataFrame data, String xLabel, String yLabel, boolean hasLegend) {
         chartConfiguration.add(chartType);
         chartConfiguration.add(title);
@@ -59,12 +62,22 @@ public class ChartFactory {
         assert chartCreator != null;
         Chart createdChart = chartCreator.factoryMethod(title, hasLegend);
         createdChart.build(data, xLabel, yLabel);
+        if (binding != null) binding.detach();
+        binding = new ChartBinding(createdChart, data, xLabel, yLabel);
 
         System.out.println(ChartFactory.class.getName() + " : Построен график типа " + createdChart.getClass().getName() + " c помощью класса-создателя " + chartCreator.getClass().getName() + '.');
 
         return createdChart;
     }
 
+    // Обновление последнего графика на месте по принятым правкам; false, если график
+    // не построен или построен по другой таблице
+    public static boolean updateChart(DataFrame data) {
+        if (binding == null || !binding.isBoundTo(data)) return false;
+        binding.flush();
+        return true;
+    }
+
     public static ArrayList<Object> getChartConfiguration() {
         return chartConfiguration;
     }
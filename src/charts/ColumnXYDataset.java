@@ -0,0 +1,411 @@
+package charts;
+
+import data.DataFrame;
+import data.column.Column;
+import data.column.NumericColumn;
+import org.jfree.data.DomainOrder;
+import org.jfree.data.xy.AbstractIntervalXYDataset;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+// Набор данных XY поверх столбцов DataFrame: значения читаются из столбцов при отрисовке,
+// точки не копируются и не упаковываются. Набор держит снимки столбцов осей (копирование при
+// записи, см. Column.copy) и меняет их только в update при принятии правок, поэтому непринятые
+// правки в таблице на графике не видны. Точки отдаются по возрастанию x (при равных x - по номеру
+// строки), поэтому JFreeChart рисует только видимый диапазон. Если столбец x уже не убывает,
+// точки идут в порядке строк; иначе хранится перестановка строк (int на точку). Перестановку
+// строит фоновая сортировка по снимку набора (snapshot, sort, setOrder), до ее окончания набор пуст.
+// Снимок делит перестановку с набором, пока тот ее не меняет: первая перестановка точек после
+// snapshot() копирует массив, и фоновая работа со снимком читает прежний порядок.
+// Точки с x = NaN не рисуются и в набор не входят. Интервалы нулевой ширины: начало и конец
+// интервала совпадают со значением
+class ColumnXYDataset extends AbstractIntervalXYDataset {
+    private static final int INSERTION_SORT_LENGTH = 16;
+    private final DataFrame data;
+    private final String xLabel;
+    private final String yLabel;
+    private Column x;
+    private Column y;
+    private int rowCount;
+    private int itemCount;
+    // Номера строк по возрастанию (x, строка); null - точки идут в порядке строк
+    private int[] order;
+    // Точки ждут фоновой сортировки
+    private boolean sorting;
+    // Перестановку читает снимок: перед изменением ее нужно скопировать
+    private boolean orderShared;
+    // Позиции точек, переставленных последним update (movedFrom > movedTo - ни одной)
+    private int movedFrom;
+    private int movedTo = -1;
+
+    ColumnXYDataset(DataFrame data, String xLabel, String yLabel) {
+        this.data = data;
+        this.xLabel = xLabel;
+        this.yLabel = yLabel;
+        takeSnapshot();
+        sorting = !rowsSorted();
+        itemCount = sorting ? 0 : countPlotted();
+    }
+
+    // Неизменяемая копия набора для фоновой работы: те же снимки столбцов и порядок точек
+    private ColumnXYDataset(ColumnXYDataset source) {
+        data = null;
+        xLabel = source.xLabel;
+        yLabel = source.yLabel;
+        x = source.x;
+        y = source.y;
+        rowCount = source.rowCount;
+        itemCount = source.itemCount;
+        order = source.order;
+        sorting = source.sorting;
+    }
+
+    @Override
+    public int getSeriesCount() {
+        return 1;
+    }
+
+    @Override
+    public Comparable<?> getSeriesKey(int series) {
+        return yLabel;
+    }
+
+    @Override
+    public DomainOrder getDomainOrder() {
+        return DomainOrder.ASCENDING;
+    }
+
+    @Override
+    public int getItemCount(int series) {
+        return itemCount;
+    }
+
+    @Override
+    public double getXValue(int series, int item) {
+        return value(x, row(item));
+    }
+
+    @Override
+    public double getYValue(int series, int item) {
+        return value(y, row(item));
+    }
+
+    @Override
+    public Number getX(int series, int item) {
+        return getXValue(series, item);
+    }
+
+    @Override
+    public Number getY(int series, int item) {
+        return getYValue(series, item);
+    }
+
+    @Override
+    public Number getStartX(int series, int item) {
+        return getX(series, item);
+    }
+
+    @Override
+    public Number getEndX(int series, int item) {
+        return getX(series, item);
+    }
+
+    @Override
+    public Number getStartY(int series, int item) {
+        return getY(series, item);
+    }
+
+    @Override
+    public Number getEndY(int series, int item) {
+        return getY(series, item);
+    }
+
+    // Правки строк rows приняты в таблице: набор берет новые снимки столбцов и переставляет только
+    // строки с новым x. Пока идет фоновая сортировка, порядок не трогается - сортировку перезапустят.
+    // Рассылает одно событие
+    void update(Collection<Integer> rows) {
+        int oldRowCount = rowCount;
+        Column oldX = x;
+        takeSnapshot();
+        movedFrom = 0;
+        movedTo = -1;
+        if (sorting) {
+            // Порядок по новым снимкам построит перезапущенная сортировка
+        } else if (rowCount != oldRowCount) {
+            order = null;
+            sorting = !rowsSorted();
+            movedTo = rowCount - 1;
+        } else if (order != null) {
+            reorder(oldX, rows);
+        } else if (!rowsSorted(rows)) {
+            order = new int[rowCount];
+            for (int i = 0; i < rowCount; i++) order[i] = i;
+            reorder(oldX, rows);
+        }
+        itemCount = sorting ? 0 : countPlotted();
+        fireDatasetChanged();
+    }
+
+    boolean isSorting() {
+        return sorting;
+    }
+
+    ColumnXYDataset snapshot() {
+        orderShared = order != null;
+        return new ColumnXYDataset(this);
+    }
+
+    // Снимок больше не используется, перестановку можно снова менять на месте
+    void releaseSnapshot() {
+        orderShared = false;
+    }
+
+    // Сортировка снимка набора; выполняется вне потока Swing
+    void sort() {
+        order = sortedOrder();
+        sorting = false;
+        itemCount = countPlotted();
+    }
+
+    // Порядок точек из отсортированного снимка, снятого после последнего update
+    void setOrder(ColumnXYDataset sorted) {
+        order = sorted.order;
+        sorting = false;
+        itemCount = countPlotted();
+        movedFrom = 0;
+        movedTo = rowCount - 1;
+        fireDatasetChanged();
+    }
+
+    int getMovedFrom() {
+        return movedFrom;
+    }
+
+    int getMovedTo() {
+        return movedTo;
+    }
+
+    // Позиция строки среди точек
+    int itemOf(int row) {
+        if (order == null) return row;
+        return position(x, row);
+    }
+
+    // Строки с новым x переносятся внутри перестановки без прохода по всему ряду. Прежние позиции
+    // ищутся двоичным поиском по прежнему снимку x, места вставки - по нему же для новых значений.
+    // Точки между крайними затронутыми позициями сдвигаются на месте блоками (System.arraycopy):
+    // сначала сжимаются, закрывая вынутые строки, затем раздвигаются с конца под вставляемые
+    private void reorder(Column oldX, Collection<Integer> rows) {
+        int count = 0;
+        int[] removed = new int[rows.size()];
+        Integer[] moved = new Integer[rows.size()];
+        for (int row : rows) {
+            if (row >= rowCount) continue;
+            removed[count] = position(oldX, row);
+            if (removed[count] < 0) throw new IllegalStateException("Строка " + row + " не найдена среди точек");
+            moved[count++] = row;
+        }
+        if (count == 0) return;
+        if (orderShared) {
+            order = order.clone();
+            orderShared = false;
+        }
+        Arrays.sort(removed, 0, count);
+        // По новым x места вставки не убывают
+        Arrays.sort(moved, 0, count, (a, b) -> compareRows(x, a, x, b));
+        int[] gaps = new int[count];
+        for (int m = 0; m < count; m++) gaps[m] = insertionPoint(oldX, moved[m]);
+        int low = Math.min(removed[0], gaps[0]);
+        int high = Math.max(removed[count - 1], gaps[count - 1] - 1);
+
+        int kept = low;
+        int next = low;
+        for (int r = 0; r < count; r++) {
+            System.arraycopy(order, next, order, kept, removed[r] - next);
+            kept += removed[r] - next;
+            next = removed[r] + 1;
+        }
+        System.arraycopy(order, next, order, kept, high + 1 - next);
+
+        int last = high - count;
+        int write = high;
+        for (int m = count - 1, r = count; m >= 0; m--) {
+            // Место вставки среди оставшихся точек: без вынутых строк левее него
+            while (r > 0 && removed[r - 1] >= gaps[m]) r--;
+            int gap = gaps[m] - r;
+            int length = last - gap + 1;
+            System.arraycopy(order, gap, order, write - length + 1, length);
+            write -= length;
+            last = gap - 1;
+            order[write--] = moved[m];
+        }
+        movedFrom = low;
+        movedTo = high;
+    }
+
+    private void takeSnapshot() {
+        x = data.getColumn(xLabel).copy();
+        y = data.getColumn(yLabel).copy();
+        rowCount = x.size();
+    }
+
+    private int row(int item) {
+        return order == null ? item : order[item];
+    }
+
+    // Позиция строки в перестановке, упорядоченной по значениям xs; -1, если ее там нет
+    private int position(Column xs, int row) {
+        int low = 0;
+        int high = order.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = compareRows(xs, order[middle], xs, row);
+            if (compare < 0) low = middle + 1;
+            else if (compare > 0) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    // Число точек перестановки (по значениям xs), меньших строки с ее текущим x
+    private int insertionPoint(Column xs, int row) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareRows(xs, order[middle], x, row) < 0) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private boolean rowsSorted() {
+        for (int i = 1; i < rowCount; i++) {
+            if (Double.compare(value(x, i - 1), value(x, i)) > 0) return false;
+        }
+        return true;
+    }
+
+    // Порядок строк мог нарушиться только рядом с измененными
+    private boolean rowsSorted(Collection<Integer> rows) {
+        for (int row : rows) {
+            if (row > 0 && row < rowCount && Double.compare(value(x, row - 1), value(x, row)) > 0) return false;
+            if (row + 1 < rowCount && Double.compare(value(x, row), value(x, row + 1)) > 0) return false;
+        }
+        return true;
+    }
+
+    // NaN при сортировке оказываются в конце и отбрасываются
+    private int countPlotted() {
+        int count = rowCount;
+        while (count > 0 && Double.isNaN(value(x, row(count - 1)))) count--;
+        return count;
+    }
+
+    private static int compareRows(Column xa, int a, Column xb, int b) {
+        int compare = Double.compare(value(xa, a), value(xb, b));
+        return compare != 0 ? compare : Integer.compare(a, b);
+    }
+
+    private static double value(Column column, int row) {
+        if (row >= column.size()) return Double.NaN;
+        if (column instanceof NumericColumn) return ((NumericColumn) column).getDouble(row);
+        Object value = column.isValid(row) ? column.get(row) : null;
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+    }
+
+    // Перестановка строк по (x, строка), отсортированная на месте: порядок полный, поэтому
+    // устойчивость не нужна и, кроме самой перестановки (int на точку), память под точки не
+    // выделяется - значения x читаются из снимка столбца. Быстрая сортировка с медианой трех;
+    // если глубина превышает 2 log n, участок досортировывается пирамидой
+    private int[] sortedOrder() {
+        int[] order = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) order[i] = i;
+        int depth = 2 * (32 - Integer.numberOfLeadingZeros(rowCount));
+        quickSort(order, 0, rowCount - 1, depth);
+        return order;
+    }
+
+    private void quickSort(int[] order, int low, int high, int depth) {
+        while (high - low >= INSERTION_SORT_LENGTH) {
+            if (depth-- == 0) {
+                heapSort(order, low, high);
+                return;
+            }
+            int split = partition(order, low, high);
+            // Рекурсия в меньшую часть, цикл по большей: глубина стека не больше log n
+            if (split - low < high - split) {
+                quickSort(order, low, split, depth);
+                low = split + 1;
+            } else {
+                quickSort(order, split + 1, high, depth);
+                high = split;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            int row = order[i];
+            double rowX = value(x, row);
+            int j = i - 1;
+            while (j >= low && compare(order[j], row, rowX) > 0) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = row;
+        }
+    }
+
+    // Разбиение Хоара: [low, результат] не больше опорной строки, дальше - не меньше
+    private int partition(int[] order, int low, int high) {
+        int middle = (low + high) >>> 1;
+        if (compare(order[middle], order[low], value(x, order[low])) < 0) swap(order, middle, low);
+        if (compare(order[high], order[middle], value(x, order[middle])) < 0) {
+            swap(order, high, middle);
+            if (compare(order[middle], order[low], value(x, order[low])) < 0) swap(order, middle, low);
+        }
+        int pivot = order[middle];
+        double pivotX = value(x, pivot);
+        int i = low - 1;
+        int j = high + 1;
+        while (true) {
+            do i++; while (compare(order[i], pivot, pivotX) < 0);
+            do j--; while (compare(order[j], pivot, pivotX) > 0);
+            if (i >= j) return j;
+            swap(order, i, j);
+        }
+    }
+
+    private void heapSort(int[] order, int low, int high) {
+        int length = high - low + 1;
+        for (int i = length / 2 - 1; i >= 0; i--) siftDown(order, low, i, length);
+        for (int end = length - 1; end > 0; end--) {
+            swap(order, low, low + end);
+            siftDown(order, low, 0, end);
+        }
+    }
+
+    private void siftDown(int[] order, int low, int node, int length) {
+        int row = order[low + node];
+        double rowX = value(x, row);
+        while (2 * node + 1 < length) {
+            int child = 2 * node + 1;
+            if (child + 1 < length && compare(order[low + child + 1], order[low + child], value(x, order[low + child])) > 0) child++;
+            if (compare(order[low + child], row, rowX) <= 0) break;
+            order[low + node] = order[low + child];
+            node = child;
+        }
+        order[low + node] = row;
+    }
+
+    // Сравнение строки a со строкой b, x которой уже прочитан
+    private int compare(int a, int b, double bX) {
+        int compare = Double.compare(value(x, a), bX);
+        return compare != 0 ? compare : Integer.compare(a, b);
+    }
+
+    private static void swap(int[] order, int i, int j) {
+        int row = order[i];
+        order[i] = order[j];
+        order[j] = row;
+    }
+}
@@ -0,0 +1,170 @@
+package charts;
+
+import data.DataFrame;
+import data.column.Column;
+import data.column.NumericColumn;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnXYDatasetTest {
+
+    @org.junit.jupiter.api.Test
+    void testSortedRowsNeedNoOrder() {
+        DataFrame data = table(new double[]{1, 2, 2, 5, Double.NaN}, new double[]{10, 20, 30, 40, 50});
+        ColumnXYDataset dataset = new ColumnXYDataset(data, "x", "y");
+        assertFalse(dataset.isSorting());
+        // Точка с x = NaN в конце в набор не входит
+        assertEquals(List.of("1.0:10.0", "2.0:20.0", "2.0:30.0", "5.0:40.0"), points(dataset));
+        assertEquals(3, dataset.itemOf(3));
+    }
+
+    // Несортированный x: до фоновой сортировки набор пуст, затем точки по (x, строка)
+    @org.junit.jupiter.api.Test
+    void testUnsortedRowsSortedByXThenRow() {
+        DataFrame data = table(new double[]{3, 1, Double.NaN, 3, 0, 1}, new double[]{1, 2, 3, 4, 5, 6});
+        ColumnXYDataset dataset = new ColumnXYDataset(data, "x", "y");
+        assertTrue(dataset.isSorting());
+        assertEquals(0, dataset.getItemCount(0));
+        sort(dataset);
+        assertEquals(List.of("0.0:5.0", "1.0:2.0", "1.0:6.0", "3.0:1.0", "3.0:4.0"), points(dataset));
+        assertEquals(4, dataset.itemOf(3));
+        assertEquals(expected(data), points(dataset));
+    }
+
+    // Снимок читает прежний порядок, пока набор переставляет точки
+    @org.junit.jupiter.api.Test
+    void testSnapshotKeepsOrder() {
+        DataFrame data = table(new double[]{4, 3, 2, 1}, new double[]{1, 2, 3, 4});
+        ColumnXYDataset dataset = sorted(data);
+        ColumnXYDataset snapshot = dataset.snapshot();
+        List<String> before = points(snapshot);
+        data.setValue("x", 0, 0.0);
+        dataset.update(List.of(0));
+        assertEquals(before, points(snapshot));
+        assertEquals(expected(data), points(dataset));
+        dataset.releaseSnapshot();
+        data.setValue("x", 1, 9.0);
+        dataset.update(List.of(1));
+        assertEquals(before, points(snapshot));
+        assertEquals(expected(data), points(dataset));
+    }
+
+    // Случайные пакеты правок x и y: после update точки совпадают с набором, построенным заново,
+    // а вне отрезка переставленных позиций не меняются. Номер строки точки - y по модулю 1000
+    @org.junit.jupiter.api.Test
+    void testRandomUpdatesMatchFreshDataset() {
+        Random random = new Random(23);
+        for (boolean rowsSorted : new boolean[]{true, false}) {
+            int rows = 400;
+            double[] xs = new double[rows];
+            double[] ys = new double[rows];
+            for (int i = 0; i < rows; i++) {
+                xs[i] = rowsSorted ? i / 3 : random.nextInt(100);
+                ys[i] = i + 1000 * random.nextInt(1000);
+            }
+            DataFrame data = table(xs, ys);
+            ColumnXYDataset dataset = sorted(data);
+            for (int batch = 0; batch < 1000; batch++) {
+                List<String> before = points(dataset);
+                Set<Integer> changed = new HashSet<>();
+                int size = 1 + random.nextInt(random.nextInt(10) == 0 ? 60 : 4);
+                for (int i = 0; i < size; i++) {
+                    int row = random.nextInt(rows);
+                    changed.add(row);
+                    if (random.nextBoolean()) data.setValue("y", row, (double) (row + 1000 * random.nextInt(1000)));
+                    else if (random.nextInt(20) == 0) data.setValue("x", row, null);
+                    else data.setValue("x", row, (double) random.nextInt(rowsSorted ? 140 : 100));
+                }
+                dataset.update(changed);
+                List<String> after = points(dataset);
+                assertEquals(expected(data), after, "пакет " + batch);
+                int unchanged = Math.min(before.size(), after.size());
+                for (int item = 0; item < unchanged; item++) {
+                    if (item >= dataset.getMovedFrom() && item <= dataset.getMovedTo()) continue;
+                    int row = (int) dataset.getYValue(0, item) % 1000;
+                    if (!changed.contains(row)) assertEquals(before.get(item), after.get(item), "пакет " + batch + ", точка " + item);
+                }
+                for (int row : changed) {
+                    int item = dataset.itemOf(row);
+                    if (item >= 0 && item < after.size()) assertEquals(point(data, row), after.get(item), "пакет " + batch + ", строка " + row);
+                }
+            }
+        }
+    }
+
+    // Фоновая сортировка большого ряда совпадает с сортировкой по (x, строка)
+    @org.junit.jupiter.api.Test
+    void testSortMatchesReference() {
+        Random random = new Random(5);
+        int rows = 100_000;
+        double[] xs = new double[rows];
+        double[] ys = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            xs[i] = random.nextInt(10) == 0 ? Double.NaN : random.nextInt(i % 2 == 0 ? 50 : 1_000_000);
+            ys[i] = i;
+        }
+        DataFrame data = table(xs, ys);
+        assertEquals(expected(data), points(sorted(data)));
+    }
+
+    private static ColumnXYDataset sorted(DataFrame data) {
+        ColumnXYDataset dataset = new ColumnXYDataset(data, "x", "y");
+        if (dataset.isSorting()) sort(dataset);
+        return dataset;
+    }
+
+    // Как DownsampledXYDataset: снимок сортируется и отдает порядок набору
+    private static void sort(ColumnXYDataset dataset) {
+        ColumnXYDataset snapshot = dataset.snapshot();
+        snapshot.sort();
+        dataset.setOrder(snapshot);
+        dataset.releaseSnapshot();
+    }
+
+    private static List<String> points(ColumnXYDataset dataset) {
+        List<String> points = new ArrayList<>();
+        for (int i = 0; i < dataset.getItemCount(0); i++) {
+            points.add(dataset.getXValue(0, i) + ":" + dataset.getYValue(0, i));
+        }
+        return points;
+    }
+
+    // Точки таблицы без x = NaN по возрастанию (x, строка)
+    private static List<String> expected(DataFrame data) {
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < data.getColumn("x").size(); i++) {
+            if (!Double.isNaN(x(data, i))) rows.add(i);
+        }
+        rows.sort(Comparator.<Integer>comparingDouble(row -> x(data, row)).thenComparingInt(row -> row));
+        List<String> points = new ArrayList<>();
+        for (int row : rows) points.add(point(data, row));
+        return points;
+    }
+
+    private static String point(DataFrame data, int row) {
+        return x(data, row) + ":" + ((NumericColumn) data.getColumn("y")).getDouble(row);
+    }
+
+    private static double x(DataFrame data, int row) {
+        Column x = data.getColumn("x");
+        return x.isValid(row) ? ((NumericColumn) x).getDouble(row) : Double.NaN;
+    }
+
+    private static DataFrame table(double[] xs, double[] ys) {
+        NumericColumn x = new NumericColumn(xs.length);
+        NumericColumn y = new NumericColumn(ys.length);
+        for (int i = 0; i < xs.length; i++) {
+            if (Double.isNaN(xs[i])) x.setNull(i);
+            else x.setDouble(i, xs[i]);
+            y.setDouble(i, ys[i]);
+        }
+        return new DataFrame(new ArrayList<>(List.of("x", "y")), List.of(x, y));
+    }
+}
@@ -0,0 +1,445 @@
+package charts;
+
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.data.DomainInfo;
+import org.jfree.data.DomainOrder;
+import org.jfree.data.Range;
+import org.jfree.data.RangeInfo;
+import org.jfree.data.general.DatasetChangeEvent;
+import org.jfree.data.general.DatasetChangeListener;
+import org.jfree.data.xy.AbstractXYDataset;
+import org.jfree.data.xy.XYDomainInfo;
+import org.jfree.data.xy.XYRangeInfo;
+
+import javax.swing.*;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntSupplier;
+
+// Прореженный для отрисовки вид набора XY: из точек видимого диапазона оси x остается не больше
+// двух на столбец пикселей, так что цена перерисовки зависит от ширины панели, а не от числа строк.
+// Вид пересчитывается из полного набора лениво - при первом обращении после смены диапазона оси
+// (масштаб, сдвиг), ширины панели или данных. По одной точке за краями диапазона сохраняется,
+// чтобы линия доходила до краев. Границы осей считаются по полному набору, поэтому автомасштаб
+// не зависит от прореживания. Точки и границы берутся из пирамиды агрегатов ряда: она строится
+// в фоне по неизменяемому снимку набора после построения графика (и фоновой сортировки точек,
+// если x не упорядочен) и пересчитывается по правкам, а до готовности запросы обходят точки
+// по одной
+class DownsampledXYDataset extends AbstractXYDataset
+        implements DomainInfo, RangeInfo, XYDomainInfo, XYRangeInfo, DatasetChangeListener {
+    private static final int NODES_PER_BUCKET = 4;
+
+    private final ColumnXYDataset source;
+    private final ValueAxis domainAxis;
+    private final IntSupplier pixelWidth;
+    private final int mode;
+
+    // Номера точек полного набора; null - точки диапазона [from, from + count) идут без прореживания
+    private int[] items = new int[0];
+    private int from;
+    private int count;
+    private boolean stale = true;
+    private Range viewRange;
+    private int viewWidth;
+    private Range xBounds;
+    private Range yBounds;
+    private SeriesPyramid pyramid;
+    // Номер изменения данных: пирамида, построенная по старым данным, отбрасывается
+    private int version;
+    private SwingWorker<SeriesPyramid, Void> builder;
+    private SwingWorker<ColumnXYDataset, Void> sorter;
+
+    DownsampledXYDataset(ColumnXYDataset source, ValueAxis domainAxis, IntSupplier pixelWidth, int mode) {
+        this.source = source;
+        this.domainAxis = domainAxis;
+        this.pixelWidth = pixelWidth;
+        this.mode = mode;
+        pyramid = new SeriesPyramid(source);
+        source.addChangeListener(this);
+        findBounds();
+        if (source.isSorting()) sortPoints();
+        else buildPyramid();
+    }
+
+    // Правки строк rows уже в столбцах: полный набор переупорядочивает точки, пирамида пересчитывает
+    // узлы переставленных и измененных точек. Если число точек изменилось или набор пересортирован
+    // целиком, пирамида строится заново в фоне. Одно событие на весь пакет
+    void update(Collection<Integer> rows) {
+        version++;
+        source.setNotify(false);
+        try {
+            source.update(rows);
+            // Сортировка или пирамида, которые еще строятся, по окончании будут построены заново
+            if (source.isSorting()) {
+                if (sorter == null) sortPoints();
+            } else if (builder == null && sorter == null) {
+                updatePyramid(rows);
+            }
+        } finally {
+            source.setNotify(true);
+        }
+    }
+
+    // Идет фоновая сортировка точек или построение пирамиды (тесты)
+    boolean isBuilding() {
+        return sorter != null || builder != null;
+    }
+
+    private void updatePyramid(Collection<Integer> rows) {
+        int total = source.getItemCount(0);
+        if (pyramid.getItemCount() != total || total > 1 && source.getMovedTo() - source.getMovedFrom() + 1 == total) {
+            pyramid = new SeriesPyramid(source);
+            buildPyramid();
+            return;
+        }
+        if (source.getMovedFrom() <= source.getMovedTo()) pyramid.update(source.getMovedFrom(), source.getMovedTo());
+        for (int row : rows) {
+            int item = source.itemOf(row);
+            if (item >= 0 && item < total) pyramid.update(item, item);
+        }
+    }
+
+    // Сортировка снимка точек в фоне; по окончании набор получает порядок, и строится пирамида
+    private void sortPoints() {
+        int sortedVersion = version;
+        ColumnXYDataset points = source.snapshot();
+        sorter = new SwingWorker<ColumnXYDataset, Void>() {
+            @Override
+            protected ColumnXYDataset doInBackground() {
+                points.sort();
+                return points;
+            }
+
+            @Override
+            protected void done() {
+                sorter = null;
+                if (sortedVersion != version) {
+                    sortPoints();
+                    return;
+                }
+                try {
+                    source.setOrder(get());
+                    pyramid = new SeriesPyramid(source);
+                    buildPyramid();
+                } catch (InterruptedException | ExecutionException e) {
+                    System.err.println("ОШИБКА: Не удалось упорядочить точки ряда " + getSeriesKey(0) + ": " + e);
+                }
+            }
+        };
+        sorter.execute();
+    }
+
+    // Пирамида строится в фоне по снимку набора: правки, принятые тем временем, меняют только сам
+    // набор, а пирамида по окончании строится заново
+    private void buildPyramid() {
+        int builtVersion = version;
+        ColumnXYDataset points = source.snapshot();
+        builder = new SwingWorker<SeriesPyramid, Void>() {
+            @Override
+            protected SeriesPyramid doInBackground() {
+                SeriesPyramid built = new SeriesPyramid(points);
+                built.build();
+                return built;
+            }
+
+            @Override
+            protected void done() {
+                builder = null;
+                source.releaseSnapshot();
+                if (builtVersion != version) {
+                    buildPyramid();
+                    return;
+                }
+                try {
+                    pyramid = get();
+                    pyramid.setPoints(source);
+                    stale = true;
+                } catch (InterruptedException | ExecutionException e) {
+                    System.err.println("ОШИБКА: Не удалось построить пирамиду ряда " + getSeriesKey(0) + ": " + e);
+                }
+            }
+        };
+        builder.execute();
+    }
+
+    @Override
+    public void datasetChanged(DatasetChangeEvent event) {
+        stale = true;
+        findBounds();
+        fireDatasetChanged();
+    }
+
+    @Override
+    public int getSeriesCount() {
+        return 1;
+    }
+
+    @Override
+    public Comparable<?> getSeriesKey(int series) {
+        return source.getSeriesKey(series);
+    }
+
+    @Override
+    public DomainOrder getDomainOrder() {
+        return DomainOrder.ASCENDING;
+    }
+
+    @Override
+    public int getItemCount(int series) {
+        refresh();
+        return count;
+    }
+
+    @Override
+    public double getXValue(int series, int item) {
+        return source.getXValue(series, item(item));
+    }
+
+    @Override
+    public double getYValue(int series, int item) {
+        return source.getYValue(series, item(item));
+    }
+
+    @Override
+    public Number getX(int series, int item) {
+        return getXValue(series, item);
+    }
+
+    @Override
+    public Number getY(int series, int item) {
+        return getYValue(series, item);
+    }
+
+    @Override
+    public double getDomainLowerBound(boolean includeInterval) {
+        return xBounds == null ? Double.NaN : xBounds.getLowerBound();
+    }
+
+    @Override
+    public double getDomainUpperBound(boolean includeInterval) {
+        return xBounds == null ? Double.NaN : xBounds.getUpperBound();
+    }
+
+    @Override
+    public Range getDomainBounds(boolean includeInterval) {
+        return xBounds;
+    }
+
+    @Override
+    public double getRangeLowerBound(boolean includeInterval) {
+        return yBounds == null ? Double.NaN : yBounds.getLowerBound();
+    }
+
+    @Override
+    public double getRangeUpperBound(boolean includeInterval) {
+        return yBounds == null ? Double.NaN : yBounds.getUpperBound();
+    }
+
+    @Override
+    public Range getRangeBounds(boolean includeInterval) {
+        return yBounds;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Range getDomainBounds(List visibleSeriesKeys, boolean includeInterval) {
+        return xBounds;
+    }
+
+    // Границы y по всем точкам полного набора в диапазоне xRange
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Range getRangeBounds(List visibleSeriesKeys, Range xRange, boolean includeInterval) {
+        if (xBounds == null || xRange.contains(xBounds.getLowerBound()) && xRange.contains(xBounds.getUpperBound())) {
+            return yBounds;
+        }
+        int total = source.getItemCount(0);
+        return yRange(firstAtLeast(xRange.getLowerBound(), total), firstAbove(xRange.getUpperBound(), total));
+    }
+
+    private int item(int item) {
+        return items == null ? from + item : items[item];
+    }
+
+    private void refresh() {
+        Range range = domainAxis.getRange();
+        int width = Math.max(1, pixelWidth.getAsInt());
+        if (!stale && range.equals(viewRange) && width == viewWidth) return;
+        stale = false;
+        viewRange = range;
+        viewWidth = width;
+
+        int total = source.getItemCount(0);
+        int first = Math.max(0, firstAtLeast(range.getLowerBound(), total) - 1);
+        int last = Math.min(total - 1, firstAbove(range.getUpperBound(), total));
+        if (last - first + 1 <= 2 * width) {
+            items = null;
+            from = first;
+            count = Math.max(0, last - first + 1);
+            return;
+        }
+        if (items == null || items.length < 2 * width + 2) items = new int[2 * width + 2];
+        count = mode == XYChart.Downsampling.LTTB
+                ? largestTriangles(first, last, 2 * width)
+                : minMax(first, last, range, width);
+    }
+
+    // Минимум и максимум y каждого столбца пикселей в порядке следования точек. Границы столбцов
+    // находятся двоичным поиском, точки столбца покрываются самыми крупными узлами пирамиды
+    private int minMax(int first, int last, Range range, int width) {
+        double lower = range.getLowerBound();
+        double step = range.getLength() / width;
+        Bucket column = new Bucket();
+        int n = 0;
+        items[n++] = first;
+        int start = first + 1;
+        for (int c = 0; c < width && start < last; c++) {
+            int end = c == width - 1 ? last : firstAtLeast(lower + (c + 1) * step, start, last);
+            if (end == start) continue;
+            column.collect(start, end, pyramid.levelFor(end - start, 1));
+            if (column.min >= 0) {
+                items[n++] = Math.min(column.min, column.max);
+                if (column.min != column.max) items[n++] = Math.max(column.min, column.max);
+            }
+            start = end;
+        }
+        items[n++] = last;
+        return n;
+    }
+
+    // Largest-Triangle-Three-Buckets: крайние точки сохраняются, из каждой корзины берется точка,
+    // образующая наибольший треугольник с выбранной точкой предыдущей корзины и средним следующей.
+    // Кандидаты корзины - минимумы и максимумы покрывающих ее узлов пирамиды, среднее считается
+    // по суммам узлов
+    private int largestTriangles(int first, int last, int threshold) {
+        int n = 0;
+        items[n++] = first;
+        int buckets = threshold - 2;
+        double size = (double) (last - first - 1) / buckets;
+        int level = pyramid.levelFor((int) size, NODES_PER_BUCKET);
+        Bucket current = new Bucket();
+        Bucket next = new Bucket();
+        current.collect(first + 1, first + 1 + (int) size, level);
+        int selected = first;
+        for (int b = 0; b < buckets; b++) {
+            double averageX;
+            double averageY;
+            if (b + 1 < buckets) {
+                next.collect(first + 1 + (int) ((b + 1) * size), first + 1 + (int) ((b + 2) * size), level);
+                averageX = next.sumX / next.count;
+                averageY = next.sumY / next.count;
+            } else {
+                averageX = source.getXValue(0, last);
+                averageY = source.getYValue(0, last);
+            }
+
+            double ax = source.getXValue(0, selected);
+            double ay = source.getYValue(0, selected);
+            double maxArea = -1;
+            int chosen = current.size > 0 ? current.candidates[0] : current.start;
+            for (int i = 0; i < current.size; i++) {
+                int item = current.candidates[i];
+                double area = Math.abs((ax - averageX) * (source.getYValue(0, item) - ay)
+                        - (ax - source.getXValue(0, item)) * (averageY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = item;
+                }
+            }
+            items[n++] = chosen;
+            selected = chosen;
+            Bucket swap = current;
+            current = next;
+            next = swap;
+        }
+        items[n++] = last;
+        return n;
+    }
+
+    // Точки [from, to) по узлам пирамиды: минимум и максимум y, точки-кандидаты LTTB и суммы для среднего
+    private class Bucket implements SeriesPyramid.Node {
+        private int[] candidates = new int[16];
+        private int size;
+        private int start;
+        private int min;
+        private int max;
+        private int count;
+        private double sumX;
+        private double sumY;
+
+        void collect(int from, int to, int level) {
+            start = from;
+            size = count = 0;
+            min = max = -1;
+            sumX = sumY = 0;
+            pyramid.cover(from, to, level, this);
+        }
+
+        @Override
+        public void accept(int minItem, int maxItem, int count, double sumX, double sumY) {
+            if (minItem < 0) return;
+            if (min < 0 || source.getYValue(0, minItem) < source.getYValue(0, min)) min = minItem;
+            if (max < 0 || source.getYValue(0, maxItem) > source.getYValue(0, max)) max = maxItem;
+            add(minItem);
+            if (maxItem != minItem) add(maxItem);
+            this.count += count;
+            this.sumX += sumX;
+            this.sumY += sumY;
+        }
+
+        private void add(int item) {
+            if (size == candidates.length) candidates = Arrays.copyOf(candidates, 2 * size);
+            candidates[size++] = item;
+        }
+    }
+
+    // Первая точка с x >= value (x в полном наборе не убывают)
+    private int firstAtLeast(double value, int total) {
+        return firstAtLeast(value, 0, total);
+    }
+
+    // Первая точка из [low, high) с x >= value; high, если таких нет
+    private int firstAtLeast(double value, int low, int high) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (source.getXValue(0, middle) < value) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    // Первая точка с x > value
+    private int firstAbove(double value, int total) {
+        int low = 0;
+        int high = total;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (source.getXValue(0, middle) <= value) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private void findBounds() {
+        int total = source.getItemCount(0);
+        if (total == 0) {
+            xBounds = yBounds = null;
+            return;
+        }
+        xBounds = new Range(source.getXValue(0, 0), source.getXValue(0, total - 1));
+        yBounds = yRange(0, total);
+    }
+
+    // Границы y точек [from, to) по самым крупным узлам пирамиды
+    private Range yRange(int from, int to) {
+        double[] bounds = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        pyramid.cover(from, to, pyramid.levelFor(to - from, 1), (minItem, maxItem, count, sumX, sumY) -> {
+            if (minItem < 0) return;
+            bounds[0] = Math.min(bounds[0], source.getYValue(0, minItem));
+            bounds[1] = Math.max(bounds[1], source.getYValue(0, maxItem));
+        });
+        return bounds[0] <= bounds[1] ? new Range(bounds[0], bounds[1]) : null;
+    }
+}
@@ -0,0 +1,281 @@
+package charts;
+
+import data.DataFrame;
+import data.column.NumericColumn;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.data.Range;
+import org.jfree.data.xy.XYDataset;
+
+import javax.swing.*;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Вид строится и читается в потоке Swing, как на графике: там же завершаются фоновые сортировка
+// и построение пирамиды
+class DownsampledXYDatasetTest {
+    private static final int WIDTH = 50;
+
+    // Минимум и максимум столбцов по узлам пирамиды совпадают с обходом всех точек столбца
+    @org.junit.jupiter.api.Test
+    void testMinMaxMatchesScan() throws Exception {
+        Random random = new Random(24);
+        int rows = 20000;
+        double[] xs = new double[rows];
+        double[] ys = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            xs[i] = i / 2;
+            ys[i] = random.nextInt(30) == 0 ? Double.NaN : random.nextInt(1000);
+        }
+        NumberAxis axis = new NumberAxis();
+        DownsampledXYDataset view = view(table(xs, ys), axis, XYChart.Downsampling.MIN_MAX);
+        for (int query = 0; query < 300; query++) {
+            double lower = random.nextInt(rows / 2);
+            double upper = lower + 1 + random.nextInt(rows / 2);
+            onEdt(() -> axis.setRange(lower, upper));
+            assertEquals(minMax(xs, ys, lower, upper), points(view), "диапазон " + lower + ".." + upper);
+        }
+    }
+
+    // Корзины мельче NODES_PER_BUCKET узлов: кандидаты - все точки, выбор как у обычного LTTB
+    @org.junit.jupiter.api.Test
+    void testLargestTrianglesMatchesScan() throws Exception {
+        Random random = new Random(42);
+        int rows = 3000;
+        double[] xs = new double[rows];
+        double[] ys = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            xs[i] = i;
+            ys[i] = random.nextGaussian() * 100;
+        }
+        NumberAxis axis = new NumberAxis();
+        DownsampledXYDataset view = view(table(xs, ys), axis, XYChart.Downsampling.LTTB);
+        for (int query = 0; query < 100; query++) {
+            double lower = random.nextInt(rows / 2);
+            double upper = lower + 2 * WIDTH + random.nextInt(rows / 2);
+            onEdt(() -> axis.setRange(lower, upper));
+            assertEquals(largestTriangles(xs, ys, lower, upper), points(view), "диапазон " + lower + ".." + upper);
+        }
+    }
+
+    // Крупные корзины по узлам пирамиды: по точке из каждой корзины, выброс не теряется
+    @org.junit.jupiter.api.Test
+    void testLargestTrianglesKeepsSpike() throws Exception {
+        Random random = new Random(7);
+        int rows = 200_000;
+        double[] xs = new double[rows];
+        double[] ys = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            xs[i] = i;
+            ys[i] = Math.sin(i / 5000.0) * 100 + random.nextGaussian();
+        }
+        ys[123_457] = 1e4;
+        NumberAxis axis = new NumberAxis();
+        axis.setRange(0, rows - 1);
+        DownsampledXYDataset view = view(table(xs, ys), axis, XYChart.Downsampling.LTTB);
+        List<String> points = points(view);
+        assertEquals(2 * WIDTH, points.size());
+        assertEquals(0.0 + ":" + ys[0], points.get(0));
+        assertEquals((rows - 1.0) + ":" + ys[rows - 1], points.get(points.size() - 1));
+        assertTrue(points.contains(123457.0 + ":" + 1e4));
+        double size = (rows - 2.0) / (2 * WIDTH - 2);
+        for (int b = 1; b < points.size() - 1; b++) {
+            double x = Double.parseDouble(points.get(b).split(":")[0]);
+            assertTrue(x >= 1 + (int) ((b - 1) * size) && x < 1 + (int) (b * size), "корзина " + b);
+        }
+    }
+
+    // Случайные пакеты правок с x по строкам и с несортированным x (фоновые сортировка и пирамида,
+    // правки во время построения): вид, его границы и границы y диапазона совпадают с видом,
+    // построенным заново
+    @org.junit.jupiter.api.Test
+    void testRandomUpdatesMatchRebuild() throws Exception {
+        Random random = new Random(2024);
+        for (int mode : new int[]{XYChart.Downsampling.MIN_MAX, XYChart.Downsampling.LTTB}) {
+            for (boolean rowsSorted : new boolean[]{true, false}) {
+                randomUpdates(random, mode, rowsSorted);
+            }
+        }
+    }
+
+    private static void randomUpdates(Random random, int mode, boolean rowsSorted) throws Exception {
+        int rows = 6000;
+        double[] xs = new double[rows];
+        double[] ys = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            xs[i] = rowsSorted ? i / 2 : random.nextInt(3000);
+            ys[i] = random.nextInt(1000);
+        }
+        DataFrame data = table(xs, ys);
+        NumberAxis axis = new NumberAxis();
+        DownsampledXYDataset[] created = new DownsampledXYDataset[1];
+        onEdt(() -> created[0] = new DownsampledXYDataset(new ColumnXYDataset(data, "x", "y"), axis, () -> WIDTH, mode));
+        DownsampledXYDataset view = created[0];
+        for (int batch = 0; batch < 50; batch++) {
+            Set<Integer> changed = new HashSet<>();
+            int size = 1 + random.nextInt(random.nextInt(10) == 0 ? 200 : 10);
+            // Пакеты правят только y или меняют x на соседние значения (x по строкам остается
+            // упорядоченным), а затем и на любые: пересчет пирамиды не должен держаться на широком
+            // отрезке переставленных точек. Новые y выходят за прежние границы
+            int kind = random.nextInt(rowsSorted && batch < 30 ? 2 : 3);
+            for (int i = 0; i < size; i++) {
+                int row = random.nextInt(rows);
+                changed.add(row);
+                if (kind == 0 || random.nextBoolean()) {
+                    data.setValue("y", row, random.nextInt(30) == 0 ? null : (Object) (double) (random.nextInt(2000) - 500));
+                } else if (random.nextInt(50) == 0) {
+                    data.setValue("x", row, null);
+                } else {
+                    NumericColumn column = (NumericColumn) data.getColumn("x");
+                    double x = column.getDouble(row);
+                    if (kind == 2 || Double.isNaN(x)) x = random.nextInt(3000);
+                    else if (rowsSorted) x = column.getDouble(Math.max(0, Math.min(rows - 1, row + random.nextInt(3) - 1)));
+                    else x = Math.max(0, Math.min(2999, x + random.nextInt(5) - 2));
+                    data.setValue("x", row, x);
+                }
+            }
+            onEdt(() -> view.update(changed));
+            // Правки подряд, пока пирамида строится, проверяются вместе со следующими
+            if (batch % 10 == 0) continue;
+            await(view);
+            NumberAxis freshAxis = new NumberAxis();
+            DownsampledXYDataset fresh = view(data, freshAxis, mode);
+            double lower = random.nextInt(1500);
+            double upper = lower + 1 + random.nextInt(1500);
+            for (Range range : new Range[]{new Range(lower, upper), new Range(-1, 3001)}) {
+                onEdt(() -> {
+                    axis.setRange(range);
+                    freshAxis.setRange(range);
+                });
+                String message = "режим " + mode + (rowsSorted ? ", x по строкам" : "") + ", пакет " + batch + ", диапазон " + range;
+                assertEquals(points(fresh), points(view), message);
+                assertEquals(fresh.getDomainBounds(true), view.getDomainBounds(true), message);
+                assertEquals(fresh.getRangeBounds(true), view.getRangeBounds(true), message);
+                assertEquals(fresh.getRangeBounds(null, range, true), view.getRangeBounds(null, range, true), message);
+            }
+        }
+    }
+
+    // Вид с построенной пирамидой
+    private static DownsampledXYDataset view(DataFrame data, NumberAxis axis, int mode) throws Exception {
+        DownsampledXYDataset[] view = new DownsampledXYDataset[1];
+        onEdt(() -> view[0] = new DownsampledXYDataset(new ColumnXYDataset(data, "x", "y"), axis, () -> WIDTH, mode));
+        await(view[0]);
+        return view[0];
+    }
+
+    private static void await(DownsampledXYDataset view) throws Exception {
+        boolean[] building = {true};
+        for (int i = 0; i < 2000 && building[0]; i++) {
+            onEdt(() -> building[0] = view.isBuilding());
+            if (building[0]) Thread.sleep(5);
+        }
+        assertFalse(building[0], "пирамида не построена");
+    }
+
+    private static List<String> points(XYDataset view) throws Exception {
+        List<String> points = new ArrayList<>();
+        onEdt(() -> {
+            for (int i = 0; i < view.getItemCount(0); i++) points.add(view.getXValue(0, i) + ":" + view.getYValue(0, i));
+        });
+        return points;
+    }
+
+    // Прореживание MIN_MAX обходом точек (x по возрастанию): крайние точки и минимум с максимумом
+    // каждого столбца пикселей в порядке следования, при равных y - левая точка
+    private static List<String> minMax(double[] xs, double[] ys, double lower, double upper) {
+        int first = Math.max(0, firstAtLeast(xs, lower, 0, xs.length) - 1);
+        int last = Math.min(xs.length - 1, firstAtLeast(xs, Math.nextUp(upper), 0, xs.length));
+        List<String> points = new ArrayList<>();
+        if (last - first + 1 <= 2 * WIDTH) {
+            for (int i = first; i <= last; i++) points.add(xs[i] + ":" + ys[i]);
+            return points;
+        }
+        points.add(xs[first] + ":" + ys[first]);
+        double step = (upper - lower) / WIDTH;
+        int start = first + 1;
+        for (int c = 0; c < WIDTH && start < last; c++) {
+            int end = c == WIDTH - 1 ? last : firstAtLeast(xs, lower + (c + 1) * step, start, last);
+            int min = -1;
+            int max = -1;
+            for (int i = start; i < end; i++) {
+                if (Double.isNaN(ys[i])) continue;
+                if (min < 0 || ys[i] < ys[min]) min = i;
+                if (max < 0 || ys[i] > ys[max]) max = i;
+            }
+            if (min >= 0) {
+                points.add(xs[Math.min(min, max)] + ":" + ys[Math.min(min, max)]);
+                if (min != max) points.add(xs[Math.max(min, max)] + ":" + ys[Math.max(min, max)]);
+            }
+            start = end;
+        }
+        points.add(xs[last] + ":" + ys[last]);
+        return points;
+    }
+
+    // Обычный LTTB по всем точкам корзин (y без NaN)
+    private static List<String> largestTriangles(double[] xs, double[] ys, double lower, double upper) {
+        int first = Math.max(0, firstAtLeast(xs, lower, 0, xs.length) - 1);
+        int last = Math.min(xs.length - 1, firstAtLeast(xs, Math.nextUp(upper), 0, xs.length));
+        List<String> points = new ArrayList<>();
+        points.add(xs[first] + ":" + ys[first]);
+        int buckets = 2 * WIDTH - 2;
+        double size = (double) (last - first - 1) / buckets;
+        int selected = first;
+        for (int b = 0; b < buckets; b++) {
+            double averageX = xs[last];
+            double averageY = ys[last];
+            if (b + 1 < buckets) {
+                int from = first + 1 + (int) ((b + 1) * size);
+                int to = first + 1 + (int) ((b + 2) * size);
+                double sumX = 0;
+                double sumY = 0;
+                for (int i = from; i < to; i++) {
+                    sumX += xs[i];
+                    sumY += ys[i];
+                }
+                averageX = sumX / (to - from);
+                averageY = sumY / (to - from);
+            }
+            double maxArea = -1;
+            int chosen = -1;
+            for (int i = first + 1 + (int) (b * size); i < first + 1 + (int) ((b + 1) * size); i++) {
+                double area = Math.abs((xs[selected] - averageX) * (ys[i] - ys[selected])
+                        - (xs[selected] - xs[i]) * (averageY - ys[selected]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            points.add(xs[chosen] + ":" + ys[chosen]);
+            selected = chosen;
+        }
+        points.add(xs[last] + ":" + ys[last]);
+        return points;
+    }
+
+    private static int firstAtLeast(double[] xs, double value, int low, int high) {
+        while (low < high && xs[low] < value) low++;
+        return low;
+    }
+
+    private static DataFrame table(double[] xs, double[] ys) {
+        NumericColumn x = new NumericColumn(xs.length);
+        NumericColumn y = new NumericColumn(ys.length);
+        for (int i = 0; i < xs.length; i++) {
+            x.setDouble(i, xs[i]);
+            if (Double.isNaN(ys[i])) y.setNull(i);
+            else y.setDouble(i, ys[i]);
+        }
+        return new DataFrame(new ArrayList<>(List.of("x", "y")), List.of(x, y));
+    }
+
+    private static void onEdt(Runnable action) throws InterruptedException, InvocationTargetException {
+        SwingUtilities.invokeAndWait(action);
+    }
+}
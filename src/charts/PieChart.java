@@ -7,14 +7,26 @@ import org.jfree.chart.JFreeChart;
 import org.jfree.data.general.DefaultPieDataset;
 
 import java.awt.*;
+import java.util.Map;
 
 public class PieChart extends Chart {
-    protected DefaultPieDataset pieChartData;
+    protected DefaultPieDataset<String> pieChartData;
     protected JFreeChart pieChart;
+    private final CategoryIndex categories = new CategoryIndex() {
+        @Override
+        protected void setValue(String category, Number value) {
+            pieChartData.setValue(category, value);
+        }
+
+        @Override
+        protected void removeValue(String category) {
+            pieChartData.remove(category);
+        }
+    };
 
     public PieChart(String title, boolean hasLegend) {
         super(title, hasLegend);
-        pieChartData = new DefaultPieDataset();
+        pieChartData = new DefaultPieDataset<>();
         pieChart = ChartFactory.createPieChart(title, pieChartData, hasLegend, true, false);
 
     }
@@ -34,8 +46,27 @@ public class PieChart extends Chart {
 
     @Override
     public void build(DataFrame data, String xLabel, String yLabel) {
-        for (int i = 0; i < data.getData().get(xLabel).size() - 1; i++) {
-            addValue((Double) data.getData().get(yLabel).get(i), (String) data.getData().get(xLabel).get(i));
+        // Набор заполняется без событий, в конце рассылается одно
+        pieChartData.setNotify(false);
+        try {
+            categories.build(data, xLabel, yLabel);
+        } finally {
+            pieChartData.setNotify(true);
+        }
+    }
+
+    @Override
+    protected JFreeChart getJFreeChart() {
+        return pieChart;
+    }
+
+    @Override
+    protected void updateDataset(DataFrame data, String xLabel, String yLabel, Map<Integer, Object[]> changedRows) {
+        pieChartData.setNotify(false);
+        try {
+            categories.update(data, xLabel, yLabel, changedRows);
+        } finally {
+            pieChartData.setNotify(true);
         }
     }
 }
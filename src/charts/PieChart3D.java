@@ -10,7 +10,7 @@ import java.awt.*;
 public class PieChart3D extends PieChart {
     public PieChart3D(String title, boolean hasLegend) {
         super(title, hasLegend);
-        pieChartData = new DefaultPieDataset();
+        pieChartData = new DefaultPieDataset<>();
         pieChart = ChartFactory.createPieChart3D(title, pieChartData, hasLegend, true, false);
     }
 
@@ -0,0 +1,157 @@
+package charts;
+
+import org.jfree.data.xy.XYDataset;
+
+// Пирамида агрегатов ряда для масштабирования и сдвига без обхода видимых точек. Точки ряда
+// (по возрастанию x) собраны в узлы по 2^(BASE_SHIFT + k) подряд идущих точек на уровне k; узел
+// хранит номера точек с минимальным и максимальным y, число точек с определенным y и суммы их
+// x и y (для среднего). Нулевой уровень строится проходом по точкам, каждый следующий - слиянием
+// пар узлов предыдущего; неполный хвост ряда в узлы не входит. Диапазон точек покрывается узлами
+// выбранного уровня, а края - узлами мельче и отдельными точками, так что запрос на уровне
+// с числом узлов порядка числа пикселей стоит O(пикселей) при любой длине ряда.
+// Пирамида без уровней (до построения) отдает все точки по одной. Строить ее можно по неизменяемому
+// снимку ряда вне потока Swing, а затем перевести на сам ряд с теми же точками (setPoints)
+class SeriesPyramid {
+    static final int BASE_SHIFT = 5;
+
+    // Узел или отдельная точка: номера точек минимума и максимума (-1, если y нигде не определен),
+    // число точек с определенным y и суммы их координат
+    interface Node {
+        void accept(int minItem, int maxItem, int count, double sumX, double sumY);
+    }
+
+    private XYDataset points;
+    private int itemCount;
+    private int[][] minItems = new int[0][];
+    private int[][] maxItems = new int[0][];
+    private int[][] counts = new int[0][];
+    private double[][] sumsX = new double[0][];
+    private double[][] sumsY = new double[0][];
+
+    SeriesPyramid(XYDataset points) {
+        this.points = points;
+    }
+
+    void setPoints(XYDataset points) {
+        this.points = points;
+    }
+
+    int getItemCount() {
+        return itemCount;
+    }
+
+    int getLevelCount() {
+        return minItems.length;
+    }
+
+    void build() {
+        int total = points.getItemCount(0);
+        int levels = 0;
+        while (total >> (BASE_SHIFT + levels) > 0) levels++;
+        int[][] newMinItems = new int[levels][];
+        int[][] newMaxItems = new int[levels][];
+        int[][] newCounts = new int[levels][];
+        double[][] newSumsX = new double[levels][];
+        double[][] newSumsY = new double[levels][];
+        for (int k = 0; k < levels; k++) {
+            int nodes = total >> (BASE_SHIFT + k);
+            newMinItems[k] = new int[nodes];
+            newMaxItems[k] = new int[nodes];
+            newCounts[k] = new int[nodes];
+            newSumsX[k] = new double[nodes];
+            newSumsY[k] = new double[nodes];
+        }
+        itemCount = total;
+        minItems = newMinItems;
+        maxItems = newMaxItems;
+        counts = newCounts;
+        sumsX = newSumsX;
+        sumsY = newSumsY;
+        if (levels > 0) update(0, total - 1);
+    }
+
+    // Пересчет узлов, содержащих точки from..to; число точек не должно измениться
+    void update(int from, int to) {
+        for (int k = 0; k < minItems.length; k++) {
+            int shift = BASE_SHIFT + k;
+            int last = Math.min(to >> shift, minItems[k].length - 1);
+            for (int node = from >> shift; node <= last; node++) {
+                if (k == 0) scan(node);
+                else merge(k, node);
+            }
+        }
+    }
+
+    // Самый крупный уровень, на котором items точек дают не меньше nodes узлов; -1 - отдельные точки
+    int levelFor(int items, int nodes) {
+        int level = -1;
+        while (level + 1 < minItems.length && (long) nodes << (BASE_SHIFT + level + 1) <= items) level++;
+        return level;
+    }
+
+    // Покрытие точек [from, to) узлами не крупнее уровня level по возрастанию x
+    void cover(int from, int to, int level, Node node) {
+        level = Math.min(level, minItems.length - 1);
+        int item = from;
+        while (item < to) {
+            int k = level;
+            while (k >= 0 && ((item & ((1 << (BASE_SHIFT + k)) - 1)) != 0 || item + (1 << (BASE_SHIFT + k)) > to)) k--;
+            if (k < 0) {
+                point(item, node);
+                item++;
+            } else {
+                int index = item >> (BASE_SHIFT + k);
+                node.accept(minItems[k][index], maxItems[k][index], counts[k][index], sumsX[k][index], sumsY[k][index]);
+                item += 1 << (BASE_SHIFT + k);
+            }
+        }
+    }
+
+    private void point(int item, Node node) {
+        double y = points.getYValue(0, item);
+        if (Double.isNaN(y)) node.accept(-1, -1, 0, 0, 0);
+        else node.accept(item, item, 1, points.getXValue(0, item), y);
+    }
+
+    private void scan(int node) {
+        int from = node << BASE_SHIFT;
+        int min = -1;
+        int max = -1;
+        int count = 0;
+        double sumX = 0;
+        double sumY = 0;
+        for (int item = from; item < from + (1 << BASE_SHIFT); item++) {
+            double y = points.getYValue(0, item);
+            if (Double.isNaN(y)) continue;
+            if (min < 0 || y < points.getYValue(0, min)) min = item;
+            if (max < 0 || y > points.getYValue(0, max)) max = item;
+            count++;
+            sumX += points.getXValue(0, item);
+            sumY += y;
+        }
+        minItems[0][node] = min;
+        maxItems[0][node] = max;
+        counts[0][node] = count;
+        sumsX[0][node] = sumX;
+        sumsY[0][node] = sumY;
+    }
+
+    private void merge(int k, int node) {
+        int left = 2 * node;
+        int right = left + 1;
+        minItems[k][node] = pick(minItems[k - 1][left], minItems[k - 1][right], true);
+        maxItems[k][node] = pick(maxItems[k - 1][left], maxItems[k - 1][right], false);
+        counts[k][node] = counts[k - 1][left] + counts[k - 1][right];
+        sumsX[k][node] = sumsX[k - 1][left] + sumsX[k - 1][right];
+        sumsY[k][node] = sumsY[k - 1][left] + sumsY[k - 1][right];
+    }
+
+    // Из двух точек - с меньшим (большим) y; при равных - левая
+    private int pick(int a, int b, boolean min) {
+        if (a < 0) return b;
+        if (b < 0) return a;
+        double ya = points.getYValue(0, a);
+        double yb = points.getYValue(0, b);
+        return (min ? yb < ya : yb > ya) ? b : a;
+    }
+}
@@ -0,0 +1,140 @@
+package charts;
+
+import org.jfree.data.xy.DefaultXYDataset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeriesPyramidTest {
+    private static final int NODE = 1 << SeriesPyramid.BASE_SHIFT;
+
+    @org.junit.jupiter.api.Test
+    void testLevels() {
+        SeriesPyramid pyramid = new SeriesPyramid(series(new double[3 * NODE + 5]));
+        assertEquals(0, pyramid.getLevelCount());
+        pyramid.build();
+        assertEquals(3 * NODE + 5, pyramid.getItemCount());
+        assertEquals(2, pyramid.getLevelCount());
+        assertEquals(-1, pyramid.levelFor(NODE - 1, 1));
+        assertEquals(0, pyramid.levelFor(NODE, 1));
+        assertEquals(1, pyramid.levelFor(100 * NODE, 1));
+        assertEquals(1, pyramid.levelFor(8 * NODE, 4));
+        assertEquals(-1, pyramid.levelFor(8 * NODE, 9));
+    }
+
+    // До построения и на уровне -1 точки отдаются по одной, точка без y - пустой узел
+    @org.junit.jupiter.api.Test
+    void testCoverByPoints() {
+        double[] ys = {3, Double.NaN, 1};
+        SeriesPyramid pyramid = new SeriesPyramid(series(ys));
+        assertEquals(List.of("0/0/1/0.0/3.0", "-1/-1/0/0.0/0.0", "2/2/1/2.0/1.0"), nodes(pyramid, 0, 3, 5));
+    }
+
+    // Узлы крупнее уровня не берутся, края покрываются мелкими узлами и точками
+    @org.junit.jupiter.api.Test
+    void testCoverAlignsNodes() {
+        SeriesPyramid pyramid = new SeriesPyramid(series(new double[8 * NODE]));
+        pyramid.build();
+        assertEquals(2 + 1 + 1 + 1, nodes(pyramid, NODE - 2, 4 * NODE + 1, 1).size());
+        assertEquals(2, nodes(pyramid, NODE, 4 * NODE, 5).size());
+        assertEquals(3 * NODE, nodes(pyramid, NODE, 4 * NODE, -1).size());
+    }
+
+    // Сводка покрытия случайных диапазонов на любом уровне совпадает с обходом точек: минимум и
+    // максимум (при равных y - левая точка), число точек с y и суммы. Значения целые, суммы точны
+    @org.junit.jupiter.api.Test
+    void testRandomCoverMatchesScan() {
+        Random random = new Random(25);
+        int items = 5000;
+        double[] ys = randomValues(random, items);
+        SeriesPyramid pyramid = new SeriesPyramid(series(ys));
+        pyramid.build();
+        for (int query = 0; query < 2000; query++) {
+            int from = random.nextInt(items);
+            int to = from + 1 + random.nextInt(items - from);
+            int level = random.nextInt(pyramid.getLevelCount() + 2) - 1;
+            assertEquals(scan(ys, from, to), summary(pyramid, ys, from, to, level), "запрос " + query);
+        }
+    }
+
+    // Случайные правки y (и NaN) с пересчетом по update - узлы всех уровней совпадают с построенными
+    // заново; пересчитывается то отрезок правки, то одна точка, как после перестановки и правки y
+    @org.junit.jupiter.api.Test
+    void testRandomUpdatesMatchBuild() {
+        Random random = new Random(52);
+        for (int items : new int[]{NODE - 1, 7 * NODE + 3, 4096, 3001}) {
+            double[] ys = randomValues(random, items);
+            SeriesPyramid pyramid = new SeriesPyramid(series(ys));
+            pyramid.build();
+            for (int batch = 0; batch < 500; batch++) {
+                int from = random.nextInt(items);
+                int to = random.nextBoolean() ? from : Math.min(items - 1, from + random.nextInt(3 * NODE));
+                for (int i = from; i <= to; i++) {
+                    if (random.nextInt(4) == 0) ys[i] = random.nextInt(10) == 0 ? Double.NaN : random.nextInt(50);
+                }
+                pyramid.update(from, to);
+                SeriesPyramid built = new SeriesPyramid(series(ys));
+                built.build();
+                for (int level = -1; level < built.getLevelCount(); level++) {
+                    assertEquals(nodes(built, 0, items, level), nodes(pyramid, 0, items, level), items + " точек, пакет " + batch + ", уровень " + level);
+                }
+            }
+        }
+    }
+
+    private static double[] randomValues(Random random, int items) {
+        double[] ys = new double[items];
+        for (int i = 0; i < items; i++) ys[i] = random.nextInt(20) == 0 ? Double.NaN : random.nextInt(50);
+        return ys;
+    }
+
+    // Ряд с x, равным номеру точки; массив y остается общим с набором
+    private static DefaultXYDataset series(double[] ys) {
+        double[] xs = new double[ys.length];
+        for (int i = 0; i < xs.length; i++) xs[i] = i;
+        DefaultXYDataset dataset = new DefaultXYDataset();
+        dataset.addSeries("y", new double[][]{xs, ys});
+        return dataset;
+    }
+
+    private static List<String> nodes(SeriesPyramid pyramid, int from, int to, int level) {
+        List<String> nodes = new ArrayList<>();
+        pyramid.cover(from, to, level, (minItem, maxItem, count, sumX, sumY) ->
+                nodes.add(minItem + "/" + maxItem + "/" + count + "/" + sumX + "/" + sumY));
+        return nodes;
+    }
+
+    private static String summary(SeriesPyramid pyramid, double[] ys, int from, int to, int level) {
+        int[] extremes = {-1, -1, 0};
+        double[] sums = new double[2];
+        pyramid.cover(from, to, level, (minItem, maxItem, count, sumX, sumY) -> {
+            if (minItem < 0) return;
+            if (extremes[0] < 0 || ys[minItem] < ys[extremes[0]]) extremes[0] = minItem;
+            if (extremes[1] < 0 || ys[maxItem] > ys[extremes[1]]) extremes[1] = maxItem;
+            extremes[2] += count;
+            sums[0] += sumX;
+            sums[1] += sumY;
+        });
+        return extremes[0] + "/" + extremes[1] + "/" + extremes[2] + "/" + sums[0] + "/" + sums[1];
+    }
+
+    private static String scan(double[] ys, int from, int to) {
+        int min = -1;
+        int max = -1;
+        int count = 0;
+        double sumX = 0;
+        double sumY = 0;
+        for (int i = from; i < to; i++) {
+            if (Double.isNaN(ys[i])) continue;
+            if (min < 0 || ys[i] < ys[min]) min = i;
+            if (max < 0 || ys[i] > ys[max]) max = i;
+            count++;
+            sumX += i;
+            sumY += ys[i];
+        }
+        return min + "/" + max + "/" + count + "/" + sumX + "/" + sumY;
+    }
+}
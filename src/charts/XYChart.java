@@ -7,15 +7,19 @@ import org.jfree.chart.JFreeChart;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.chart.plot.XYPlot;
 import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
-import org.jfree.data.xy.XYSeries;
-import org.jfree.data.xy.XYSeriesCollection;
 
 import java.awt.*;
+import java.util.Map;
 
 
 public class XYChart extends Chart {
 
-    private XYSeriesCollection xyChartData;
+    private static int downsampling = Downsampling.MIN_MAX;
+
+    // Точки читаются из снимков столбцов таблицы; до построения набора нет
+    private ColumnXYDataset xyChartData;
+    // Прореженный вид набора, который рисует график
+    private DownsampledXYDataset xyChartView;
     private JFreeChart xyChart;
     private XYPlot xyPlot;
     private String xLabel = "";
@@ -23,8 +27,7 @@ public class XYChart extends Chart {
 
     public XYChart(String title, boolean hasLegend) {
         super(title, hasLegend);
-        xyChartData = new XYSeriesCollection();
-        xyChart = ChartFactory.createXYLineChart(title, xLabel, yLabel, xyChartData, PlotOrientation.VERTICAL, hasLegend, true, false);
+        xyChart = ChartFactory.createXYLineChart(title, xLabel, yLabel, null, PlotOrientation.VERTICAL, hasLegend, true, false);
         xyPlot = xyChart.getXYPlot();
         xyPlot.setRangeGridlinePaint(gridColor);
         XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer();
@@ -33,13 +36,13 @@ public class XYChart extends Chart {
         xyPlot.setRenderer(renderer);
     }
 
-
-    public void createSeries(String seriesName) {
-        xyChartData.addSeries(new XYSeries(seriesName));
+    // Способ прореживания точек для графиков, построенных после вызова
+    public static void setDownsampling(int mode) {
+        downsampling = mode;
     }
 
-    public void addValue(String seriesName, Double x, Double y) {
-        xyChartData.getSeries(seriesName).add(x, y);
+    public static int getDownsampling() {
+        return downsampling;
     }
 
     @Override
@@ -51,14 +54,40 @@ public class XYChart extends Chart {
         return chartPanel;
     }
 
+    @Override
+    protected JFreeChart getJFreeChart() {
+        return xyChart;
+    }
+
+    // Правки приняты: набор берет новые снимки столбцов, переставляет точки с новым x и обновляет
+    // пирамиду; прореженный вид рассылает одно событие на пакет
+    @Override
+    protected void updateDataset(DataFrame data, String xLabel, String yLabel, Map<Integer, Object[]> changedRows) {
+        xyChartView.update(changedRows.keySet());
+    }
+
     @Override
     public void build(DataFrame data, String xLabel, String yLabel) {
         xyPlot.getDomainAxis().setLabel(xLabel);
         xyPlot.getRangeAxis().setLabel(yLabel);
-        createSeries(yLabel);
-        for (int i = 0; i < data.getData().get(xLabel).size(); i++) {
-            addValue(yLabel, (Double) data.getData().get(xLabel).get(i), (Double) data.getData().get(yLabel).get(i));
+        xyChartData = new ColumnXYDataset(data, xLabel, yLabel);
+        xyChartView = new DownsampledXYDataset(xyChartData, xyPlot.getDomainAxis(), this::plotWidth, downsampling);
+        xyPlot.setDataset(xyChartView);
+    }
+
+    // Ширина панели в пикселях; до размещения панели - расчетная ширина графика
+    private int plotWidth() {
+        return chartPanel != null && chartPanel.getWidth() > 0 ? chartPanel.getWidth() : CHART_WIDTH;
+    }
+
+
+    public final class Downsampling {
+        // Минимум и максимум на столбец пикселей: выбросы всегда видны
+        public static final int MIN_MAX = 0;
+        // Largest-Triangle-Three-Buckets: форма линии без лишних вертикальных штрихов
+        public static final int LTTB = 1;
 
+        private Downsampling() {
         }
     }
-}
\ No newline at end of file
+}
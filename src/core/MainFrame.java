@@ -5,17 +5,21 @@ import charts.Chart;
 import core.design.GUIDesignerFrame;
 import core.state.ChangedState;
 import core.state.OriginalState;
+import core.state.RedoState;
 import core.state.ResetState;
 import core.state.StateContext;
+import data.DataFrame;
 import data.DataMediator;
 import data.strategy.*;
 import tools.ChartSnapshotManager;
 import tools.FileManager;
 import tools.ImageConverter;
+import tools.LoadProgress;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
@@ -25,6 +29,8 @@ import java.util.ArrayList;
 import java.util.Locale;
 import java.util.ResourceBundle;
 import java.util.Stack;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 public class MainFrame extends JFrame {
     public static final int MAIN_FRAME_WIDTH = 1600;
@@ -47,8 +53,12 @@ public class MainFrame extends JFrame {
     private ArrayList<JButton> buttonsHeap;
     private JButton commitChangesButton;
     private JButton resetChangesButton;
+    private JButton redoChangesButton;
     private JButton buildChartButton;
     private JButton snapshotButton;
+    private JButton cancelLoadingButton;
+    private JProgressBar loadingProgressBar;
+    private LoadProgress loadProgress;
     private JMenu settings;
     private JPanel buttonsPanel;
     private JMenuItem settingShapshotPath;
@@ -89,8 +99,20 @@ public class MainFrame extends JFrame {
         resetChangesButton = new JButton(rb.getString("reset_changes"));
         buttonsHeap.add(resetChangesButton);
         resetChangesButton.setEnabled(false);
+        redoChangesButton = new JButton(rb.getString("redo_changes"));
+        buttonsHeap.add(redoChangesButton);
+        redoChangesButton.setEnabled(false);
         buttonsPanel.add(commitChangesButton);
         buttonsPanel.add(resetChangesButton);
+        buttonsPanel.add(redoChangesButton);
+        cancelLoadingButton = new JButton(rb.getString("cancel"));
+        buttonsHeap.add(cancelLoadingButton);
+        cancelLoadingButton.setVisible(false);
+        buttonsPanel.add(cancelLoadingButton);
+        loadingProgressBar = new JProgressBar(0, 100);
+        loadingProgressBar.setStringPainted(true);
+        loadingProgressBar.setVisible(false);
+        buttonsPanel.add(loadingProgressBar);
         dataPanel.add(buttonsPanel);
         dataPanel.add(loadedDataLabel);
         contents = new Box(BoxLayout.Y_AXIS);
@@ -135,6 +157,8 @@ public class MainFrame extends JFrame {
         buildChartButton = new JButton(rb.getString("build_chart"));
         buttonsHeap.add(buildChartButton);
         buildChartButton.setBackground(new Color(0x7C7CE3));
+        // График строится только по полностью загруженным данным
+        buildChartButton.setEnabled(false);
         chartPanel.add(buildChartButton, BorderLayout.SOUTH);
 
         snapshotButton = new JButton(rb.getString("save_png"));
@@ -165,6 +189,21 @@ public class MainFrame extends JFrame {
         });
 
 
+        redoChangesButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                tableModelContext.setState(new RedoState());
+                tableModelContext.updateDataFrame();
+            }
+        });
+
+
+        cancelLoadingButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if (loadProgress != null) loadProgress.cancel();
+            }
+        });
+
+
         snapshotButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 try {
@@ -207,6 +246,8 @@ public class MainFrame extends JFrame {
         return backgroundColor;
     }
     private JTable statTable = new JTable();
+    private SwingWorker<DescribeResult, Void> statWorker;
+    private boolean statTableStale;
 
     public void setBackgroundColor(Color backgroundColor) {
         this.backgroundColor = backgroundColor;
@@ -221,6 +262,37 @@ public class MainFrame extends JFrame {
         this.textColor = textColor;
     }
 
+    // Таблица статистики строится из агрегатов, которые DataMediator поддерживает при правках.
+    // Расчет идет в фоне по снимку таблицы; запросы во время расчета сливаются в один следующий
+    public void updateStatTable() {
+        if (statWorker != null) {
+            statTableStale = true;
+            return;
+        }
+        IncrementalStatistics.Snapshot snapshot = mediator.snapshotStatistics();
+        statWorker = new SwingWorker<DescribeResult, Void>() {
+            @Override
+            protected DescribeResult doInBackground() {
+                return snapshot.describe();
+            }
+
+            @Override
+            protected void done() {
+                statWorker = null;
+                try {
+                    statTable.setModel(get().toTableModel(rb.getString("value_name")));
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+                if (statTableStale) {
+                    statTableStale = false;
+                    updateStatTable();
+                }
+            }
+        };
+        statWorker.execute();
+    }
+
     public static JTable getInputTable() {
         return inputTable;
     }
@@ -401,109 +473,12 @@ public class MainFrame extends JFrame {
                     int dotIndex = file.getAbsolutePath().lastIndexOf('.');
                     String extension = (dotIndex == -1) ? "" : file.getAbsolutePath().substring(dotIndex + 1);
                     if (extension.equals("xlsx") || extension.equals("xls")) {
-                        mediator.getFileManager().loadDataExcel(file.getPath());
-                        tableModelContext.setState(new OriginalState());
-                        tableModelContext.updateDataFrame();
+                        loadFile(file, true);
                     } else if (extension.equals("csv")) {
-                        mediator.getFileManager().loadDataCSV(file.getPath());
-                        tableModelContext.setState(new OriginalState());
-                        tableModelContext.updateDataFrame();
+                        loadFile(file, false);
                     } else {
                         System.out.println("ОШИБКА: Невозможно открыть файл");
-                        return;
-                    }
-                    DefaultTableModel inputTableModel = mediator.sendTabelModel();
-                    //tableModelContext.setState(new ResetState());
-                    inputTable.setModel(inputTableModel);
-
-                    Action action = new AbstractAction() {
-                        public void actionPerformed(ActionEvent e) {
-                            TableCellListener tcl = (TableCellListener) e.getSource();
-                            //System.out.println("Row   : " + tcl.getRow());
-                            //System.out.println("Column: " + tcl.getColumn());
-                            //System.out.println("Old   : " + tcl.getOldValue());
-                            //System.out.println("New   : " + tcl.getNewValue());
-                            ArrayList<Object> change = new ArrayList<>();
-                            change.add(inputTable.getColumnName(tcl.getColumn()));
-                            change.add(tcl.getColumn());
-                            change.add(tcl.getRow());
-                            change.add(tcl.getOldValue());
-                            change.add(tcl.getNewValue());
-                            //System.out.println(Arrays.toString(change.toArray()));
-                            mediator.getInputTableChanges().add(change);
-                            //tableModelContext.setState(new ChangedState());
-                        }
-                    };
-                    TableCellListener tcl = new TableCellListener(inputTable, action);
-
-                    contents = new Box(BoxLayout.Y_AXIS);
-                    contents.add(new JScrollPane(inputTable));
-                    tablePanel.add(contents);
-                    tablePanel.repaint();
-                    tablePanel.revalidate();
-
-                    String[] keySetArray = new String[mediator.sendDataFrame().getData().keySet().toArray().length + 1];
-                    keySetArray[0] = rb.getString("value_name");
-                    for (int i = 1; i < keySetArray.length; i++) {
-                        keySetArray[i] = mediator.sendDataFrame().getData().keySet().toArray()[i - 1].toString();
-
-                    }
-
-                    DefaultTableModel statTableModel = new DefaultTableModel(keySetArray, 0);
-                    String[] statFunctions = new String[]{"count", "mean", "std", "min", "max", "1st quantile", "median", "3rd quantile"};
-                    ArrayList<String[]> statData = new ArrayList<>();
-                    statData.add(statFunctions);
-                    for (String key : mediator.sendDataFrame().getData().keySet()) {
-                        String[] columnStatData = new String[statFunctions.length];
-
-                        StatCalculationContext context = new StatCalculationContext();
-
-                        context.setStrategy(new ConcreteStrategyCount());
-                        columnStatData[0] = context.executeStrategy(mediator.sendDataFrame(), key).toString();
-
-                        context.setStrategy(new ConcreteStrategyMean());
-                        columnStatData[1] = context.executeStrategy(mediator.sendDataFrame(), key).toString();
-
-                        context.setStrategy(new ConcreteStrategyStd());
-                        columnStatData[2] = context.executeStrategy(mediator.sendDataFrame(), key).toString();
-
-                        context.setStrategy(new ConcreteStrategyMin());
-                        columnStatData[3] = context.executeStrategy(mediator.sendDataFrame(), key).toString();
-
-                        context.setStrategy(new ConcreteStrategyMax());
-                        columnStatData[4] = context.executeStrategy(mediator.sendDataFrame(), key).toString();
-
-                        context.setStrategy(new ConcreteStrategyPercentile());
-                        columnStatData[5] = context.executeStrategy(mediator.sendDataFrame(), key, 0.25).toString();
-                        columnStatData[6] = context.executeStrategy(mediator.sendDataFrame(), key, 0.5).toString();
-                        columnStatData[7] = context.executeStrategy(mediator.sendDataFrame(), key, 0.75).toString();
-
-                        statData.add(columnStatData);
-
-                        //System.out.println(Arrays.toString(columnStatData));
-                    }
-
-                    String[] rowStatData = new String[statFunctions.length];
-                    int index = 0;
-                    for (int i = 0; i < rowStatData.length; i++) {
-                        int j = 0;
-                        for (int k = 0; k < statData.size(); k++) {
-                            rowStatData[j] = statData.get(k)[index];
-                            j++;
-                        }
-                        statTableModel.addRow(rowStatData);
-                        index++;
                     }
-                    statInfoLabel.setVisible(true);
-                    statTable.setModel(statTableModel);
-                    Box contents1 = new Box(BoxLayout.Y_AXIS);
-                    contents1.add(new JScrollPane(statTable));
-                    dataPanel.add(contents1);
-                    dataPanel.repaint();
-                    dataPanel.revalidate();
-                    commitChangesButton.setEnabled(true);
-                    resetChangesButton.setEnabled(true);
-
                 }else{
                     System.out.println("Open command canceled");
                 }
@@ -726,11 +701,114 @@ public class MainFrame extends JFrame {
         return rb;
     }
 
+    // Файл читается в фоновом потоке: пока идет разбор, в таблице видны первые строки, а таблица
+    // статистики и построение графика становятся доступны только после полной загрузки
+    private void loadFile(File file, boolean excel) {
+        TableModel previousTableModel = mediator.sendTabelModel();
+        loadProgress = new LoadProgress() {
+            @Override
+            public void progress(long bytesRead, long totalBytes, long rows) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        showLoadingProgress(bytesRead, totalBytes, rows);
+                    }
+                });
+            }
+
+            @Override
+            public void preview(DataFrame firstRows) {
+                TableModel previewModel = mediator.createTableModel(firstRows);
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        inputTable.setModel(previewModel);
+                    }
+                });
+            }
+        };
+        LoadProgress progress = loadProgress;
+        setLoading(true);
+        // Посредник меняется только в done(), в потоке Swing: фон лишь читает таблицу и журнал
+        new SwingWorker<FileManager.LoadedTable, Void>() {
+            @Override
+            protected FileManager.LoadedTable doInBackground() {
+                if (excel) return mediator.getFileManager().readDataExcel(file.getPath(), progress);
+                return mediator.getFileManager().readDataCSV(file.getPath(), progress);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    mediator.getFileManager().install(get());
+                } catch (InterruptedException | ExecutionException e) {
+                    if (e.getCause() instanceof CancellationException) System.out.println("Загрузка файла отменена");
+                    else e.printStackTrace();
+                    setLoading(false);
+                    inputTable.setModel(previousTableModel != null ? previousTableModel : new DefaultTableModel());
+                    return;
+                }
+                setLoading(false);
+                showLoadedData();
+            }
+        }.execute();
+    }
+
+    private void setLoading(boolean loading) {
+        boolean loaded = !loading && mediator.sendDataFrame() != null;
+        open.setEnabled(!loading);
+        inputTable.setEnabled(!loading);
+        cancelLoadingButton.setVisible(loading);
+        loadingProgressBar.setVisible(loading);
+        loadingProgressBar.setIndeterminate(true);
+        loadingProgressBar.setString(rb.getString("loaded_rows") + 0);
+        commitChangesButton.setEnabled(loaded);
+        resetChangesButton.setEnabled(loaded);
+        redoChangesButton.setEnabled(loaded);
+        buildChartButton.setEnabled(loaded);
+        buttonsPanel.revalidate();
+    }
+
+    private void showLoadingProgress(long bytesRead, long totalBytes, long rows) {
+        if (!loadingProgressBar.isVisible()) return;
+        if (totalBytes > 0) {
+            loadingProgressBar.setIndeterminate(false);
+            loadingProgressBar.setValue((int) (100 * bytesRead / totalBytes));
+        }
+        loadingProgressBar.setString(rb.getString("loaded_rows") + rows);
+    }
+
+    private void showLoadedData() {
+        tableModelContext.setState(new OriginalState());
+        tableModelContext.updateDataFrame();
+        // Правки ячеек модель таблицы сама пишет в DataFrame и журнал изменений
+        inputTable.setModel(mediator.sendTabelModel());
+
+        contents = new Box(BoxLayout.Y_AXIS);
+        contents.add(new JScrollPane(inputTable));
+        tablePanel.add(contents);
+        tablePanel.repaint();
+        tablePanel.revalidate();
+
+        statInfoLabel.setVisible(true);
+        updateStatTable();
+        Box contents1 = new Box(BoxLayout.Y_AXIS);
+        contents1.add(new JScrollPane(statTable));
+        dataPanel.add(contents1);
+        dataPanel.repaint();
+        dataPanel.revalidate();
+        mediator.updateChart();
+        commitChangesButton.setEnabled(true);
+        resetChangesButton.setEnabled(true);
+        redoChangesButton.setEnabled(true);
+        buildChartButton.setEnabled(true);
+    }
+
     private void updateLanguage() {
         setTitle(rb.getString("program_name"));
         loadedDataLabel.setText(rb.getString("downloaded_data"));
         commitChangesButton.setText(rb.getString("commit_changes"));
         resetChangesButton.setText(rb.getString("reset_changes"));
+        redoChangesButton.setText(rb.getString("redo_changes"));
+        cancelLoadingButton.setText(rb.getString("cancel"));
         statInfoLabel.setText(rb.getString("stat_info"));
         buildChartButton.setText(rb.getString("build_chart"));
         snapshotButton.setText(rb.getString("save_png"));
@@ -786,6 +864,7 @@ public class MainFrame extends JFrame {
                     JFrame childFrame = childFrameStack.pop();
                     if (childFrame != null) childFrame.dispose();
                 }
+                mediator.getFileManager().closeEditLog();
                 System.exit(0);
             }
         });
@@ -1,98 +0,0 @@
-package core;
-
-import javax.swing.*;
-import java.awt.event.ActionEvent;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
-
-
-public class TableCellListener implements PropertyChangeListener, Runnable {
-    private JTable table;
-    private Action action;
-
-    private int row;
-    private int column;
-    private Object oldValue;
-    private Object newValue;
-
-
-    public TableCellListener(JTable table, Action action) {
-        this.table = table;
-        this.action = action;
-        this.table.addPropertyChangeListener(this);
-    }
-
-    private TableCellListener(JTable table, int row, int column, Object oldValue, Object newValue) {
-        this.table = table;
-        this.row = row;
-        this.column = column;
-        this.oldValue = oldValue;
-        this.newValue = newValue;
-    }
-
-    public int getColumn() {
-        return column;
-    }
-
-    public Object getNewValue() {
-        return newValue;
-    }
-
-
-    public Object getOldValue() {
-        return oldValue;
-    }
-
-    public int getRow() {
-        return row;
-    }
-
-    public JTable getTable() {
-        return table;
-    }
-
-    @Override
-    public void propertyChange(PropertyChangeEvent e) {
-        if ("tableCellEditor".equals(e.getPropertyName())) {
-            if (table.isEditing())
-                processEditingStarted();
-            else
-                processEditingStopped();
-        }
-    }
-
-    private void processEditingStarted() {
-        SwingUtilities.invokeLater(this);
-    }
-
-    @Override
-    public void run() {
-        row = table.convertRowIndexToModel(table.getEditingRow());
-        column = table.convertColumnIndexToModel(table.getEditingColumn());
-        oldValue = table.getModel().getValueAt(row, column);
-        newValue = null;
-    }
-
-    private void processEditingStopped() {
-        newValue = table.getModel().getValueAt(row, column);
-
-        if (!newValue.toString().equals(oldValue.toString())) {
-            TableCellListener tcl = new TableCellListener(
-                    getTable(), getRow(), getColumn(), getOldValue(), getNewValue());
-
-            ActionEvent event = new ActionEvent(
-                    tcl,
-                    ActionEvent.ACTION_PERFORMED,
-                    "");
-            action.actionPerformed(event);
-
-            //TableCellRenderer renderer = table.getCellRenderer(row, column);
-            //Object value = table.getModel().getValueAt(table.getEditingRow(), table.getEditingColumn());
-            //boolean hasFocus = true;
-            //Component cell = renderer.getTableCellRendererComponent(table, value, table.getSelectionModel().isSelectedIndex(row), hasFocus, row, column);
-            //Component cell = table.getEditorComponent().;
-            //cell.setForeground(Color.red);
-
-        }
-    }
-}
@@ -0,0 +1,16 @@
+package core.state;
+
+import data.DataMediator;
+
+public class RedoState implements State {
+    private static final String NAME = "redo";
+
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void updateDataFrame(StateContext context) {
+        DataMediator.getInstance().redoChanges();
+    }
+}
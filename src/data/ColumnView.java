@@ -0,0 +1,41 @@
+package data;
+
+import data.column.Column;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+// Представление столбца в виде List<Object> для кода, работающего через DataFrame.getData().
+// Значения упаковываются только при обращении, запись идет через DataFrame.setValue
+class ColumnView extends AbstractList<Object> implements RandomAccess {
+    private final DataFrame dataFrame;
+    private final String key;
+    private Column column;
+
+    ColumnView(DataFrame dataFrame, String key, Column column) {
+        this.dataFrame = dataFrame;
+        this.key = key;
+        this.column = column;
+    }
+
+    void setColumn(Column column) {
+        this.column = column;
+    }
+
+    @Override
+    public Object get(int index) {
+        return column.get(index);
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        Object previous = column.get(index);
+        dataFrame.setValue(key, index, element);
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return column.size();
+    }
+}
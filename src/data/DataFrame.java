@@ -1,130 +1,173 @@
 package data;
 
+import data.column.Column;
+import data.column.NumberParser;
+import data.column.NumericColumn;
+import data.column.ObjectColumn;
+
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class DataFrame implements Cloneable {
     private ArrayList<Object> columnHeaders;
-    private ArrayList<ArrayList<Object>> tableData;
+    private LinkedHashMap<String, Column> columns = new LinkedHashMap<>();
+    private HashMap<String, List<Object>> data;
+    private ArrayList<DataFrameListener> listeners = new ArrayList<>();
+
+    public DataFrame(Map<String, ? extends List<Object>> data) {
+        setData(data);
+    }
 
-    public DataFrame(ArrayList<Object> columnHeaders, ArrayList<ArrayList<Object>> tableData) {
+    public DataFrame(ArrayList<Object> columnHeaders, List<Column> columns) {
         this.columnHeaders = columnHeaders;
-        this.tableData = tableData;
-        ArrayList<String> columns = new ArrayList<>();
-        ArrayList<ArrayList<Object>> normalizedData = new ArrayList<>();
-        for (ArrayList<Object> row : tableData) {
-            ArrayList<Object> normalizedRow = new ArrayList<>();
-            for (Object cell : row) {
-                try {
-                    normalizedRow.add((Double) cell);
-                } catch (ClassCastException ex) {
-                    normalizedRow.add((String) cell);
-                }
-            }
-            normalizedData.add(normalizedRow);
+        for (int i = 0; i < columnHeaders.size(); i++) {
+            this.columns.put(columnHeaders.get(i).toString(), columns.get(i));
         }
-        normalizedData = transpose(normalizedData);
-        for (Object column : columnHeaders) columns.add(column.toString());
-        for (int i = 0; i < columns.size(); i++) {
-            data.put(columns.get(i), normalizedData.get(i));
-            //System.out.println(columns.get(i) + ":    " + normalizedData.get(i).toString());
-        }
-        //System.out.println(normalizedData);
-    }
-    public DataFrame(HashMap<String, ArrayList<Object>> data) {
-        this.data = data;
     }
-    private HashMap<String, ArrayList<Object>> data = new HashMap<>();
 
     public ArrayList<Object> getColumnHeaders() {
         return columnHeaders;
     }
 
+    // Построчная копия собирается по требованию, сама таблица хранится только по столбцам
     public ArrayList<ArrayList<Object>> getTableData() {
+        ArrayList<ArrayList<Object>> tableData = new ArrayList<>();
+        int rowCount = getRowCount();
+        for (int r = 0; r < rowCount; r++) {
+            ArrayList<Object> row = new ArrayList<>();
+            for (Column column : columns.values()) row.add(r < column.size() ? column.get(r) : null);
+            tableData.add(row);
+        }
         return tableData;
     }
 
-    public HashMap<String, ArrayList<Object>> getData() {
+    // Совместимое представление: столбцы в виде List<Object> без копирования данных
+    public HashMap<String, List<Object>> getData() {
+        if (data == null) {
+            data = new LinkedHashMap<>();
+            for (Map.Entry<String, Column> entry : columns.entrySet()) {
+                data.put(entry.getKey(), new ColumnView(this, entry.getKey(), entry.getValue()));
+            }
+        }
         return data;
     }
 
-    public void setData(HashMap<String, ArrayList<Object>> data) {
-        this.data = data;
+    public void setData(Map<String, ? extends List<Object>> data) {
+        columns = new LinkedHashMap<>();
+        columnHeaders = new ArrayList<>();
+        for (Map.Entry<String, ? extends List<Object>> entry : data.entrySet()) {
+            columns.put(entry.getKey(), Column.fromValues(entry.getValue()));
+            columnHeaders.add(entry.getKey());
+        }
+        this.data = null;
     }
 
-    public ArrayList<ArrayList<Object>> transpose(ArrayList<ArrayList<Object>> matrixIn) {
-        ArrayList<ArrayList<Object>> matrixOut = new ArrayList<>();
-        int rowCount = matrixIn.size();
-        int colCount = 0;
+    public Column getColumn(String key) {
+        return columns.get(key);
+    }
 
+    // Числовой столбец для примитивного доступа или null, если столбец не числовой
+    public NumericColumn getNumericColumn(String key) {
+        Column column = columns.get(key);
+        return column instanceof NumericColumn ? (NumericColumn) column : null;
+    }
 
-        for (int i = 0; i < rowCount; i++) {
-            ArrayList<Object> row = matrixIn.get(i);
-            int rowSize = row.size();
-            if (rowSize > colCount) {
-                colCount = rowSize;
-            }
-        }
+    public long getVersion(String key) {
+        return columns.get(key).getVersion();
+    }
 
-        for (int r = 0; r < rowCount; r++){
-            ArrayList<Object> innerIn = matrixIn.get(r);
-
-            for (int c = 0; c < colCount; c++){
-
-                //add it to the outgoing matrix
-                //get matrixOut[c], or create it
-                ArrayList<Object> matrixOutRow = new ArrayList<>();
-                if (r != 0) {
-                    try{
-                        matrixOutRow = matrixOut.get(c);
-                    }catch(java.lang.IndexOutOfBoundsException e){
-                        System.out.println("Ошибка транспонирования!\n");
-                    }
-                }
-                //add innerIn[c]
-                try{
-                    matrixOutRow.add(innerIn.get(c));
-                }catch (java.lang.IndexOutOfBoundsException e){
-                }
-
-                try {
-                    matrixOut.set(c,matrixOutRow);
-                }catch(java.lang.IndexOutOfBoundsException e){
-                    matrixOut.add(matrixOutRow);
-                }
-            }
-        }
-        return matrixOut;
+    public List<String> getColumnNames() {
+        return new ArrayList<>(columns.keySet());
+    }
+
+    public int getRowCount() {
+        int rowCount = 0;
+        for (Column column : columns.values()) rowCount = Math.max(rowCount, column.size());
+        return rowCount;
     }
 
     public void sortDataByKey(String key) {
-        Collections.sort((ArrayList) data.get(key));
+        Column column = columns.get(key);
+        column.sort();
+        column.markModified();
     }
 
     public void sortAllData() {
-        for (String key : data.keySet()) sortDataByKey(key);
+        for (String key : columns.keySet()) sortDataByKey(key);
     }
 
     public void setValue(String key, int pos, Object value) {
-        try {
-            data.get(key).set(pos, Double.valueOf(value.toString()));
-        } catch (NumberFormatException ex) {
-            data.get(key).set(pos, (String) value);
+        Object parsedValue = parseValue(new NumberParser(), value);
+        Column column = columns.get(key);
+        Object oldValue = column.get(pos);
+        if (!column.accepts(parsedValue)) {
+            column = ObjectColumn.copyOf(column);
+            replaceColumn(key, column);
         }
+        column.set(pos, parsedValue);
+        column.markModified();
+        for (DataFrameListener listener : listeners) listener.valueChanged(key, pos, oldValue, parsedValue);
         //System.out.println("TEST: " + data.get(key).get(pos).getClass());
     }
 
+    // Пакетная запись count значений в один столбец: смена типа столбца и версии - один раз
+    // на пакет. Значения в values заменяются разобранными
+    public void setValues(String key, int[] rows, Object[] values, int count) {
+        NumberParser numberParser = new NumberParser();
+        Column column = columns.get(key);
+        boolean accepted = true;
+        for (int i = 0; i < count; i++) {
+            values[i] = parseValue(numberParser, values[i]);
+            accepted &= column.accepts(values[i]);
+        }
+        if (!accepted) {
+            column = ObjectColumn.copyOf(column);
+            replaceColumn(key, column);
+        }
+        for (int i = 0; i < count; i++) {
+            Object oldValue = listeners.isEmpty() ? null : column.get(rows[i]);
+            column.set(rows[i], values[i]);
+            for (DataFrameListener listener : listeners) listener.valueChanged(key, rows[i], oldValue, values[i]);
+        }
+        column.markModified();
+    }
+
+    // Текст, похожий на число, становится числом; числа (Double) не разбираются повторно
+    private static Object parseValue(NumberParser numberParser, Object value) {
+        if (value == null || value instanceof Double) return value;
+        return numberParser.parse(value.toString()) ? (Object) numberParser.getValue() : value;
+    }
+
+    public void addListener(DataFrameListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(DataFrameListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void replaceColumn(String key, Column column) {
+        columns.put(key, column);
+        if (data != null) ((ColumnView) data.get(key)).setColumn(column);
+    }
+
+    // Снимок таблицы: столбцы копируются при записи, так что снимок делит с оригиналом все
+    // неизмененные куски и не меняется от последующих правок
     public DataFrame clone() {
-        DataFrame clone = new DataFrame(data);
-        return clone;
+        ArrayList<Column> copies = new ArrayList<>();
+        for (Column column : columns.values()) copies.add(column.copy());
+        return new DataFrame(new ArrayList<>(columnHeaders), copies);
     }
 
     public void printData() {
-        for (String key : data.keySet()) {
+        for (String key : columns.keySet()) {
             System.out.print(key + " : ");
-            for (Object el : data.get(key)) {
-                System.out.print(el.toString() + " ");
+            Column column = columns.get(key);
+            for (int i = 0; i < column.size(); i++) {
+                System.out.print(column.get(i) + " ");
             }
             System.out.print('\n');
         }
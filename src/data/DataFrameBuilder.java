@@ -0,0 +1,77 @@
+package data;
+
+import data.column.Column;
+import data.column.ColumnBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Построение DataFrame за один проход: загрузчик дописывает значения прямо в буферы столбцов
+// по мере разбора, построчная матрица и транспонирование не нужны.
+// Тип каждого столбца выбирается в build() по встреченным значениям (см. ColumnBuilder)
+public class DataFrameBuilder {
+    private final ArrayList<Object> columnHeaders = new ArrayList<>();
+    private final ArrayList<ColumnBuilder> columns = new ArrayList<>();
+
+    public DataFrameBuilder() {
+    }
+
+    public DataFrameBuilder(List<?> columnHeaders) {
+        for (Object header : columnHeaders) addColumn(header);
+    }
+
+    // Возвращает номер добавленного столбца
+    public int addColumn(Object header) {
+        columnHeaders.add(header);
+        columns.add(new ColumnBuilder());
+        return columns.size() - 1;
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    public ColumnBuilder column(int index) {
+        return columns.get(index);
+    }
+
+    // Число - в числовой буфер, строка - в строковый, null - пустая ячейка
+    public DataFrameBuilder append(int column, Object value) {
+        ColumnBuilder builder = columns.get(column);
+        if (value == null) builder.appendNull();
+        else if (value instanceof Number) builder.appendDouble(((Number) value).doubleValue());
+        else if (value instanceof String) builder.appendString((String) value);
+        else throw new IllegalArgumentException("Неподдерживаемый тип значения: " + value.getClass().getName());
+        return this;
+    }
+
+    // Для построчных источников: значения раскладываются по столбцам сразу,
+    // недостающие в конце строки ячейки пустые, лишние отбрасываются
+    public DataFrameBuilder appendRow(List<?> row) {
+        int rowIndex = getRowCount();
+        for (int c = 0; c < columns.size(); c++) {
+            if (c < row.size()) append(c, row.get(c));
+            columns.get(c).padTo(rowIndex + 1);
+        }
+        return this;
+    }
+
+    public int getRowCount() {
+        int rowCount = 0;
+        for (ColumnBuilder column : columns) rowCount = Math.max(rowCount, column.size());
+        return rowCount;
+    }
+
+    // Первые rowCount строк отдельной таблицей, например для предварительного просмотра
+    public DataFrame head(int rowCount) {
+        ArrayList<Column> built = new ArrayList<>();
+        for (ColumnBuilder column : columns) built.add(column.head(rowCount).build());
+        return new DataFrame(new ArrayList<>(columnHeaders), built);
+    }
+
+    public DataFrame build() {
+        ArrayList<Column> built = new ArrayList<>();
+        for (ColumnBuilder column : columns) built.add(column.build());
+        return new DataFrame(columnHeaders, built);
+    }
+}
@@ -0,0 +1,6 @@
+package data;
+
+// Наблюдатель за изменениями ячеек DataFrame
+public interface DataFrameListener {
+    void valueChanged(String key, int row, Object oldValue, Object newValue);
+}
@@ -0,0 +1,74 @@
+package data;
+
+import data.column.Column;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+
+// Модель JTable поверх столбцов DataFrame: ячейки читаются по запросу таблицы, построчной копии
+// нет, так что память зависит только от числа видимых строк. Правка ячейки сразу пишется в
+// DataFrame и добавляется в журнал правок (EditJournal) со старым и новым значением.
+// Без журнала модель только для чтения (предварительный просмотр при загрузке)
+public class DataFrameTableModel extends AbstractTableModel {
+    private final DataFrame dataFrame;
+    private final EditJournal journal;
+    private final String[] keys;
+    private final int rowCount;
+
+    public DataFrameTableModel(DataFrame dataFrame, EditJournal journal) {
+        this.dataFrame = dataFrame;
+        this.journal = journal;
+        ArrayList<Object> columnHeaders = dataFrame.getColumnHeaders();
+        keys = new String[columnHeaders.size()];
+        for (int c = 0; c < keys.length; c++) keys[c] = columnHeaders.get(c).toString();
+        rowCount = dataFrame.getRowCount();
+    }
+
+    public DataFrame getDataFrame() {
+        return dataFrame;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return keys.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return keys[column];
+    }
+
+    // Пустые ячейки показываются пустыми
+    @Override
+    public Object getValueAt(int row, int column) {
+        Column values = dataFrame.getColumn(keys[column]);
+        return row < values.size() && values.isValid(row) ? values.get(row) : null;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return journal != null;
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        Object oldValue = getValueAt(row, column);
+        if (sameValue(oldValue, value)) return;
+        dataFrame.setValue(keys[column], row, value);
+        // В журнал идет значение в том виде, в каком его сохранил столбец (число, а не текст)
+        journal.record(column, row, oldValue, getValueAt(row, column));
+        fireTableCellUpdated(row, column);
+    }
+
+    // Редактор JTable возвращает текст, поэтому значения сравниваются по строковому виду
+    private static boolean sameValue(Object oldValue, Object value) {
+        String oldText = oldValue == null ? "" : oldValue.toString();
+        String text = value == null ? "" : value.toString();
+        return oldText.equals(text);
+    }
+}
@@ -5,9 +5,14 @@ import charts.ChartFactory;
 import core.MainFrame;
 import core.state.OriginalState;
 import core.state.StateContext;
+import data.column.Column;
+import data.strategy.IncrementalStatistics;
+import data.strategy.QuantileSketch;
+import data.strategy.StatCalculationContext;
+import data.strategy.StatDescriber;
+import tools.EditLog;
 import tools.FileManager;
 
-import javax.swing.table.DefaultTableModel;
 import java.util.*;
 
 import static core.MainFrame.getCanvasPanel;
@@ -17,10 +22,12 @@ public class DataMediator {
     private MainFrame mainFrame;
     private FileManager fileManager;
     private DataFrame dataFrame;
-    private DefaultTableModel tableModel;
+    private DataFrameTableModel tableModel;
+    private IncrementalStatistics statistics;
 
-    private Queue<ArrayList<Object>> inputTableChanges = new LinkedList<>();
-    private Stack<ArrayList<Object>> reversedInputTableChanges = new Stack<>();
+    private final EditJournal journal = new EditJournal();
+    // Принятые правки на диске; null - таблица без журнала (превью, ошибка ввода-вывода)
+    private EditLog editLog;
 
     private DataMediator() {
     }
@@ -33,28 +40,45 @@ public class DataMediator {
         this.mainFrame = mainFrame;
     }
 
-    public void formDataFrame(ArrayList<Object> columnHeaders, ArrayList<ArrayList<Object>> tableData) {
-        dataFrame = new DataFrame(columnHeaders, tableData);
+    public void formDataFrame(DataFrame dataFrame) {
+        this.dataFrame = dataFrame;
     }
 
-    public void formTableModel(ArrayList<Object> columnHeaders, ArrayList<ArrayList<Object>> tableData) {
-        tableModel = new DefaultTableModel(columnHeaders.toArray(), 0);
-        for (ArrayList<Object> row : tableData) {
-            tableModel.addRow(row.toArray(new Object[0]));
-        }
+    // Новая таблица начинает журнал правок заново
+    public void formTableModel(DataFrame dataFrame) {
+        journal.clear();
+        tableModel = new DataFrameTableModel(dataFrame, journal);
+    }
+
+    // Модель только для чтения, без сохранения в посреднике (просмотр первых строк при загрузке)
+    public DataFrameTableModel createTableModel(DataFrame dataFrame) {
+        return new DataFrameTableModel(dataFrame, null);
     }
 
 
+    // Снимок текущего DataFrame для статистики: снимается в потоке Swing, а считается (describe)
+    // в фоне. После первого расчета статистика обновляется по правкам без полного прохода
+    public IncrementalStatistics.Snapshot snapshotStatistics() {
+        if (statistics == null || statistics.getDataFrame() != dataFrame) {
+            if (statistics != null) statistics.detach();
+            StatCalculationContext context = new StatCalculationContext();
+            context.setParallel(true);
+            context.setApproximate(StatDescriber.APPROXIMATE_ROW_THRESHOLD, QuantileSketch.DEFAULT_EPSILON);
+            statistics = context.describeIncrementally(dataFrame, StatDescriber.DEFAULT_PERCENTS);
+        }
+        return statistics.snapshot();
+    }
+
     public FileManager getFileManager() {
         return fileManager;
     }
 
-    public Queue<ArrayList<Object>> getInputTableChanges() {
-        return inputTableChanges;
+    public EditJournal getEditJournal() {
+        return journal;
     }
 
-    public Stack<ArrayList<Object>> getReversedInputTableChanges() {
-        return reversedInputTableChanges;
+    public void setEditLog(EditLog editLog) {
+        this.editLog = editLog;
     }
 
     public void setFileManager(FileManager fileManager) {
@@ -65,7 +89,7 @@ public class DataMediator {
         return dataFrame;
     }
 
-    public DefaultTableModel sendTabelModel() {
+    public DataFrameTableModel sendTabelModel() {
         return tableModel;
     }
 
@@ -79,62 +103,76 @@ public class DataMediator {
     public void setOriginalTabelModel(StateContext context) {
         if (context.getState().getName().equals("original")) {
             OriginalState state = (OriginalState) context.getState();
-            tableModel = (DefaultTableModel) state.getOriginalTabelModel();
+            tableModel = (DataFrameTableModel) state.getOriginalTabelModel();
         } else System.err.println("ОШИБКА: Не удалось установить начальный TabelModel.");
     }
 
+    // Принятие правок: значения уже в DataFrame (их пишет модель таблицы), так что транзакция -
+    // это закрытие набора в журнале, запись на диск и одно обновление графика
     public void commitChanges() {
-        ArrayList<Object> lastChange;
-        HashMap<String, Integer> occurencyMap = new HashMap<>();
-        boolean start = true;
-        while (!inputTableChanges.isEmpty()) {
-            lastChange = inputTableChanges.poll();
-            String key = lastChange.get(0).toString();
-            int column = (int) lastChange.get(1);
-            int row = (int) lastChange.get(2);
-            Object newValue = lastChange.get(4);
-            dataFrame.setValue(key, row, newValue);
-            if (!start) {
-                for (Map.Entry<String, Integer> occurencyPair : occurencyMap.entrySet()) {
-                    if (!key.equals(occurencyPair.getKey())
-                            || row != occurencyPair.getValue()) {
-                        reversedInputTableChanges.push(lastChange);
-                        occurencyMap.put(key, row);
-                    }
-                }
-            } else reversedInputTableChanges.push(lastChange);
-
-            tableModel.setValueAt(newValue, row, column);
+        if (journal.hasPendingEdits()) {
+            if (editLog != null) {
+                journal.forEachPending(editLog::set);
+                editLog.commit(dataFrame);
+            }
+            journal.commit();
         }
-        reversedInputTableChanges.push(new ArrayList<>());
-        //StateContext.getDataFrames().push(new DataFrame(dataFrame.getData()));
-        dataFrame.printData();
-        updateChart();
+        refreshViews();
     }
 
+    // Непринятые правки отменяются целиком, иначе откатывается последний принятый набор правок
     public void resetChanges() {
-        ArrayList<Object> lastChange;
-        reversedInputTableChanges.pop();
-        while (!reversedInputTableChanges.isEmpty()
-                && (lastChange = reversedInputTableChanges.pop()).size() > 0) {
-            String key = lastChange.get(0).toString();
-            int column = (int) lastChange.get(1);
-            int row = (int) lastChange.get(2);
-            Object oldValue = lastChange.get(3);
-            dataFrame.setValue(key, row, oldValue);
-            tableModel.setValueAt(oldValue, row, column);
+        EditBatch batch = new EditBatch(tableModel.getColumnCount());
+        if (journal.hasPendingEdits()) {
+            journal.rollback(batch);
+            batch.applyTo(dataFrame, tableModel);
+        } else if (journal.canUndo()) {
+            journal.undo(logged(batch));
+            batch.applyTo(dataFrame, tableModel);
+            if (editLog != null) editLog.commit(dataFrame);
+        } else throw new EmptyStackException();
+        refreshViews();
+    }
+
+    // Повтор последнего отмененного набора правок
+    public void redoChanges() {
+        if (!journal.canRedo()) {
+            System.err.println("ОШИБКА: Нет отмененных изменений для повтора.");
+            return;
         }
-        //StateContext.getDataFrames().push(new DataFrame(dataFrame.getData()));
-        dataFrame.printData();
+        EditBatch batch = new EditBatch(tableModel.getColumnCount());
+        journal.redo(logged(batch));
+        batch.applyTo(dataFrame, tableModel);
+        if (editLog != null) editLog.commit(dataFrame);
+        refreshViews();
+    }
+
+    // Отмена и повтор принятых правок сами становятся транзакциями журнала на диске
+    private EditJournal.Applier logged(EditBatch batch) {
+        if (editLog == null) return batch;
+        return (column, row, value) -> {
+            batch.apply(column, row, value);
+            editLog.set(column, row, value);
+        };
+    }
+
+    private void refreshViews() {
         updateChart();
+        mainFrame.updateStatTable();
     }
 
+    // Построенный по этой таблице график обновляется на месте, иначе строится заново, если в таблице
+    // есть его столбцы (после загрузки файла - сразу, чтобы сортировка и пирамида шли в фоне)
     public void updateChart() {
+        if (ChartFactory.updateChart(dataFrame)) return;
         ArrayList<Object> chartConfiguration = ChartFactory.getChartConfiguration();
         if (chartConfiguration.size() > 0) {
+            String xLabel = (String) chartConfiguration.get(3);
+            String yLabel = (String) chartConfiguration.get(4);
+            if (dataFrame.getColumn(xLabel) == null || dataFrame.getColumn(yLabel) == null) return;
+            ChartFactory.clearChartConfiguration();
             Chart chart = ChartFactory.createChart((Integer) chartConfiguration.get(0), (String) chartConfiguration.get(1),
-                    dataFrame,
-                    (String) chartConfiguration.get(3), (String) chartConfiguration.get(4), Chart.getLegendIncluded());
+                    dataFrame, xLabel, yLabel, Chart.getLegendIncluded());
             MainFrame.setChart(chart);
             MainFrame.getCanvasPanel().removeAll();
             MainFrame.getCanvasPanel().add(chart.getChartPanel());
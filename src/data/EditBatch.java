@@ -0,0 +1,57 @@
+package data;
+
+import javax.swing.event.TableModelEvent;
+import java.util.Arrays;
+
+// Пакет правок для применения одной транзакцией: правки собираются по столбцам, каждый столбец
+// пишется в DataFrame одним вызовом setValues, а таблица получает одно событие на весь
+// затронутый диапазон строк вместо события на каждую ячейку
+class EditBatch implements EditJournal.Applier {
+    private final int[][] rows;
+    private final Object[][] values;
+    private final int[] counts;
+    private int firstRow = Integer.MAX_VALUE;
+    private int lastRow = -1;
+
+    EditBatch(int columnCount) {
+        rows = new int[columnCount][];
+        values = new Object[columnCount][];
+        counts = new int[columnCount];
+    }
+
+    // Порядок правок внутри столбца сохраняется, так что при повторной правке ячейки побеждает последняя
+    @Override
+    public void apply(int column, int row, Object value) {
+        int count = counts[column];
+        if (rows[column] == null) {
+            rows[column] = new int[16];
+            values[column] = new Object[16];
+        } else if (count == rows[column].length) {
+            rows[column] = Arrays.copyOf(rows[column], 2 * count);
+            values[column] = Arrays.copyOf(values[column], 2 * count);
+        }
+        rows[column][count] = row;
+        values[column][count] = value;
+        counts[column] = count + 1;
+        firstRow = Math.min(firstRow, row);
+        lastRow = Math.max(lastRow, row);
+    }
+
+    boolean isEmpty() {
+        return lastRow < 0;
+    }
+
+    void applyTo(DataFrame dataFrame, DataFrameTableModel tableModel) {
+        if (isEmpty()) return;
+        int touchedColumn = TableModelEvent.ALL_COLUMNS;
+        int touchedCount = 0;
+        for (int column = 0; column < counts.length; column++) {
+            if (counts[column] == 0) continue;
+            dataFrame.setValues(tableModel.getColumnName(column), rows[column], values[column], counts[column]);
+            touchedColumn = column;
+            touchedCount++;
+        }
+        if (touchedCount > 1) touchedColumn = TableModelEvent.ALL_COLUMNS;
+        tableModel.fireTableChanged(new TableModelEvent(tableModel, firstRow, lastRow, touchedColumn));
+    }
+}
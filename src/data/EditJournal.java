@@ -0,0 +1,302 @@
+package data;
+
+import java.util.Arrays;
+
+// Журнал правок ячеек для многоуровневой отмены и повтора. Записи хранятся в кольцевом буфере
+// параллельными массивами примитивов: столбец, строка и старое/новое значение (числа - битами
+// double, строки и прочее - ссылкой). Записи идут наборами: незакрытый набор - непринятые правки,
+// commit() закрывает его. Повторная правка ячейки внутри незакрытого набора не добавляет запись,
+// а меняет новое значение уже записанной. Число записей ограничено памятью: при переполнении
+// вытесняются самые старые наборы (сами строковые значения в лимит не входят)
+public class EditJournal {
+    public static final long DEFAULT_MEMORY_LIMIT = 16 << 20;
+    // Столбец, строка, два long, два указателя и байт признаков
+    static final int RECORD_BYTES = 48;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private static final byte NULL = 0;
+    private static final byte NUMBER = 1;
+    private static final byte OBJECT = 2;
+    private static final int NEW_KIND_SHIFT = 2;
+    private static final int KIND_MASK = 3;
+    private static final byte BATCH_END = 1 << 4;
+
+    // Применение значения к ячейке при отмене и повторе
+    public interface Applier {
+        void apply(int column, int row, Object value);
+    }
+
+    private final int maxCapacity;
+    private int[] columns;
+    private int[] rows;
+    private long[] oldBits;
+    private long[] newBits;
+    private Object[] oldRefs;
+    private Object[] newRefs;
+    private byte[] kinds;
+
+    // Сквозные номера записей: [first, pendingStart) - принятые наборы, [pendingStart, cursor) -
+    // непринятые правки, [cursor, end) - отмененные наборы для повтора
+    private long first;
+    private long pendingStart;
+    private long cursor;
+    private long end;
+    private final CellIndex pendingCells = new CellIndex();
+
+    public EditJournal() {
+        this(DEFAULT_MEMORY_LIMIT);
+    }
+
+    public EditJournal(long memoryLimit) {
+        maxCapacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, memoryLimit / RECORD_BYTES));
+        allocate(Math.min(INITIAL_CAPACITY, maxCapacity));
+    }
+
+    private void allocate(int capacity) {
+        columns = new int[capacity];
+        rows = new int[capacity];
+        oldBits = new long[capacity];
+        newBits = new long[capacity];
+        oldRefs = new Object[capacity];
+        newRefs = new Object[capacity];
+        kinds = new byte[capacity];
+    }
+
+    // Правка ячейки, уже записанная в таблицу. Отменяемые наборы после нее больше не повторить
+    public void record(int column, int row, Object oldValue, Object newValue) {
+        for (long seq = cursor; seq < end; seq++) release(slot(seq));
+        end = cursor;
+        long seq = pendingCells.get(column, row);
+        if (seq >= first) {
+            setNew(slot(seq), newValue);
+            return;
+        }
+        if (end - first == columns.length) {
+            if (columns.length < maxCapacity) grow();
+            else evict();
+        }
+        int slot = slot(end);
+        columns[slot] = column;
+        rows[slot] = row;
+        kinds[slot] = encode(oldValue, slot, oldBits, oldRefs);
+        setNew(slot, newValue);
+        pendingCells.put(column, row, end);
+        end++;
+        cursor = end;
+    }
+
+    public boolean hasPendingEdits() {
+        return cursor > pendingStart;
+    }
+
+    public int getPendingCount() {
+        return (int) (cursor - pendingStart);
+    }
+
+    // Обход непринятых правок в порядке записи с новыми значениями
+    public void forEachPending(Applier applier) {
+        for (long seq = pendingStart; seq < cursor; seq++) {
+            int slot = slot(seq);
+            applier.apply(columns[slot], rows[slot], decode(kinds[slot] >> NEW_KIND_SHIFT, slot, newBits, newRefs));
+        }
+    }
+
+    // Закрытие набора непринятых правок; возвращает число правок в нем
+    public int commit() {
+        int count = getPendingCount();
+        if (count == 0) return 0;
+        kinds[slot(cursor - 1)] |= BATCH_END;
+        pendingStart = cursor;
+        pendingCells.clear();
+        return count;
+    }
+
+    // Откат непринятых правок в обратном порядке, записи о них удаляются
+    public int rollback(Applier applier) {
+        int count = getPendingCount();
+        for (long seq = cursor - 1; seq >= pendingStart; seq--) applyOld(seq, applier);
+        for (long seq = pendingStart; seq < cursor; seq++) release(slot(seq));
+        cursor = end = pendingStart;
+        pendingCells.clear();
+        return count;
+    }
+
+    public boolean canUndo() {
+        return !hasPendingEdits() && cursor > first;
+    }
+
+    public boolean canRedo() {
+        return !hasPendingEdits() && end > cursor;
+    }
+
+    // Отмена последнего принятого набора; возвращает число отмененных правок
+    public int undo(Applier applier) {
+        if (!canUndo()) return 0;
+        long start = cursor - 1;
+        while (start > first && (kinds[slot(start - 1)] & BATCH_END) == 0) start--;
+        for (long seq = cursor - 1; seq >= start; seq--) applyOld(seq, applier);
+        int count = (int) (cursor - start);
+        cursor = pendingStart = start;
+        return count;
+    }
+
+    // Повтор последнего отмененного набора
+    public int redo(Applier applier) {
+        if (!canRedo()) return 0;
+        long last = cursor;
+        while (last < end - 1 && (kinds[slot(last)] & BATCH_END) == 0) last++;
+        for (long seq = cursor; seq <= last; seq++) {
+            int slot = slot(seq);
+            applier.apply(columns[slot], rows[slot], decode(kinds[slot] >> NEW_KIND_SHIFT, slot, newBits, newRefs));
+        }
+        int count = (int) (last + 1 - cursor);
+        cursor = pendingStart = last + 1;
+        return count;
+    }
+
+    public int size() {
+        return (int) (end - first);
+    }
+
+    public void clear() {
+        Arrays.fill(oldRefs, null);
+        Arrays.fill(newRefs, null);
+        first = pendingStart = cursor = end = 0;
+        pendingCells.clear();
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % columns.length);
+    }
+
+    private void applyOld(long seq, Applier applier) {
+        int slot = slot(seq);
+        applier.apply(columns[slot], rows[slot], decode(kinds[slot], slot, oldBits, oldRefs));
+    }
+
+    private void setNew(int slot, Object value) {
+        byte kind = encode(value, slot, newBits, newRefs);
+        kinds[slot] = (byte) (kinds[slot] & ~(KIND_MASK << NEW_KIND_SHIFT) | kind << NEW_KIND_SHIFT);
+    }
+
+    private static byte encode(Object value, int slot, long[] bits, Object[] refs) {
+        refs[slot] = null;
+        if (value == null) return NULL;
+        if (value instanceof Double) {
+            bits[slot] = Double.doubleToRawLongBits((Double) value);
+            return NUMBER;
+        }
+        refs[slot] = value;
+        return OBJECT;
+    }
+
+    private static Object decode(int kinds, int slot, long[] bits, Object[] refs) {
+        switch (kinds & KIND_MASK) {
+            case NUMBER:
+                return Double.longBitsToDouble(bits[slot]);
+            case OBJECT:
+                return refs[slot];
+            default:
+                return null;
+        }
+    }
+
+    private void release(int slot) {
+        oldRefs[slot] = null;
+        newRefs[slot] = null;
+    }
+
+    private void grow() {
+        int[] oldColumns = columns;
+        int[] oldRows = rows;
+        long[] oldOld = oldBits;
+        long[] oldNew = newBits;
+        Object[] oldOldRefs = oldRefs;
+        Object[] oldNewRefs = newRefs;
+        byte[] oldKinds = kinds;
+        allocate((int) Math.min(maxCapacity, 2L * oldColumns.length));
+        for (long seq = first; seq < end; seq++) {
+            int from = (int) (seq % oldColumns.length);
+            int to = slot(seq);
+            columns[to] = oldColumns[from];
+            rows[to] = oldRows[from];
+            oldBits[to] = oldOld[from];
+            newBits[to] = oldNew[from];
+            oldRefs[to] = oldOldRefs[from];
+            newRefs[to] = oldNewRefs[from];
+            kinds[to] = oldKinds[from];
+        }
+    }
+
+    // Вытеснение самого старого принятого набора. Если весь журнал занят непринятыми правками,
+    // вытесняется самая старая из них, и откатить ее уже нельзя
+    private void evict() {
+        long seq = first;
+        if (first < pendingStart) {
+            while ((kinds[slot(seq)] & BATCH_END) == 0) release(slot(seq++));
+        }
+        release(slot(seq));
+        first = seq + 1;
+        if (pendingStart < first) pendingStart = first;
+    }
+
+    // Номера записей непринятых правок по ячейкам: открытая адресация по ключу (столбец, строка)
+    private static class CellIndex {
+        private long[] keys = new long[16];
+        private long[] values = new long[16];
+        private int count;
+
+        long get(int column, int row) {
+            long key = key(column, row);
+            for (int i = index(key); ; i = (i + 1) & (keys.length - 1)) {
+                if (keys[i] == 0) return -1;
+                if (keys[i] == key) return values[i];
+            }
+        }
+
+        void put(int column, int row, long value) {
+            if (2 * (count + 1) > keys.length) rehash(keys.length * 2);
+            long key = key(column, row);
+            int i = index(key);
+            while (keys[i] != 0 && keys[i] != key) i = (i + 1) & (keys.length - 1);
+            if (keys[i] == 0) count++;
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        void clear() {
+            if (count == 0) return;
+            if (keys.length > 16) {
+                keys = new long[16];
+                values = new long[16];
+            } else {
+                Arrays.fill(keys, 0);
+            }
+            count = 0;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[capacity];
+            values = new long[capacity];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == 0) continue;
+                int i = index(oldKeys[j]);
+                while (keys[i] != 0) i = (i + 1) & (keys.length - 1);
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+
+        // Ноль - признак пустой ячейки таблицы, поэтому к столбцу прибавляется единица
+        private static long key(int column, int row) {
+            return (long) (column + 1) << 32 | (row & 0xFFFFFFFFL);
+        }
+
+        private int index(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 40) & (keys.length - 1);
+        }
+    }
+}
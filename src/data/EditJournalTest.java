@@ -0,0 +1,221 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EditJournalTest {
+
+    @org.junit.jupiter.api.Test
+    void testCommit() {
+        EditJournal journal = new EditJournal();
+        Table table = new Table();
+        table.edit(journal, 0, 1, 1.5);
+        table.edit(journal, 2, 0, "текст");
+        table.edit(journal, 1, 3, null);
+        assertTrue(journal.hasPendingEdits());
+        assertFalse(journal.canUndo());
+        List<Object> pending = new ArrayList<>();
+        journal.forEachPending((column, row, value) -> pending.add(column + ":" + row + "=" + value));
+        assertEquals(List.of("0:1=1.5", "2:0=текст", "1:3=null"), pending);
+
+        assertEquals(3, journal.commit());
+        assertFalse(journal.hasPendingEdits());
+        assertTrue(journal.canUndo());
+        assertFalse(journal.canRedo());
+        assertEquals(0, journal.commit());
+    }
+
+    @org.junit.jupiter.api.Test
+    void testRollback() {
+        EditJournal journal = new EditJournal();
+        Table table = new Table();
+        table.edit(journal, 0, 0, 1.0);
+        journal.commit();
+        Map<Long, Object> committed = table.snapshot();
+
+        table.edit(journal, 0, 0, 2.0);
+        table.edit(journal, 1, 5, "a");
+        table.edit(journal, 1, 5, "b");
+        assertEquals(2, journal.rollback(table));
+        assertEquals(committed, table.cells);
+        assertFalse(journal.hasPendingEdits());
+        assertEquals(1, journal.size());
+        // Откат не трогает принятый набор
+        assertEquals(1, journal.undo(table));
+        assertEquals(Map.of(), table.cells);
+    }
+
+    @org.junit.jupiter.api.Test
+    void testMultiLevelUndoRedo() {
+        EditJournal journal = new EditJournal();
+        Table table = new Table();
+        List<Map<Long, Object>> versions = new ArrayList<>();
+        versions.add(table.snapshot());
+        for (int batch = 1; batch <= 4; batch++) {
+            for (int i = 0; i < batch; i++) table.edit(journal, i, batch, (double) (10 * batch + i));
+            table.edit(journal, 0, 0, "версия " + batch);
+            journal.commit();
+            versions.add(table.snapshot());
+        }
+        for (int batch = 4; batch >= 1; batch--) {
+            assertEquals(batch + 1, journal.undo(table));
+            assertEquals(versions.get(batch - 1), table.cells);
+        }
+        assertFalse(journal.canUndo());
+        assertEquals(0, journal.undo(table));
+        for (int batch = 1; batch <= 3; batch++) {
+            assertEquals(batch + 1, journal.redo(table));
+            assertEquals(versions.get(batch), table.cells);
+        }
+        assertTrue(journal.canRedo());
+
+        // Новая правка после отмены отбрасывает наборы для повтора
+        table.edit(journal, 7, 7, 7.0);
+        journal.commit();
+        assertFalse(journal.canRedo());
+        assertEquals(0, journal.redo(table));
+        journal.undo(table);
+        assertEquals(versions.get(3), table.cells);
+    }
+
+    @org.junit.jupiter.api.Test
+    void testSameCellCoalesced() {
+        EditJournal journal = new EditJournal();
+        Table table = new Table();
+        table.edit(journal, 1, 1, 1.0);
+        table.edit(journal, 1, 1, "два");
+        table.edit(journal, 1, 1, 3.0);
+        assertEquals(1, journal.getPendingCount());
+        assertEquals(1, journal.size());
+        journal.forEachPending((column, row, value) -> assertEquals(3.0, value));
+        journal.commit();
+
+        // В следующем наборе та же ячейка - новая запись
+        table.edit(journal, 1, 1, 4.0);
+        assertEquals(2, journal.size());
+        journal.commit();
+        journal.undo(table);
+        assertEquals(3.0, table.get(1, 1));
+        journal.undo(table);
+        assertNull(table.get(1, 1));
+    }
+
+    // Лимит на 10 записей: старые наборы вытесняются целиком, отменить можно только оставшиеся
+    @org.junit.jupiter.api.Test
+    void testEvictionAtMemoryLimit() {
+        EditJournal journal = new EditJournal(10 * EditJournal.RECORD_BYTES);
+        Table table = new Table();
+        List<Map<Long, Object>> versions = new ArrayList<>();
+        versions.add(table.snapshot());
+        for (int batch = 1; batch <= 20; batch++) {
+            for (int i = 0; i < 3; i++) table.edit(journal, i, batch % 4, (double) (batch * 3 + i));
+            journal.commit();
+            versions.add(table.snapshot());
+            assertTrue(journal.size() <= 10);
+        }
+        int undone = 0;
+        while (journal.canUndo()) {
+            assertEquals(3, journal.undo(table));
+            undone++;
+            assertEquals(versions.get(20 - undone), table.cells);
+        }
+        assertEquals(3, undone);
+        while (journal.canRedo()) journal.redo(table);
+        assertEquals(versions.get(20), table.cells);
+    }
+
+    // Непринятые правки сверх лимита вытесняют самые старые из них
+    @org.junit.jupiter.api.Test
+    void testEvictionOfPendingEdits() {
+        EditJournal journal = new EditJournal(4 * EditJournal.RECORD_BYTES);
+        Table table = new Table();
+        for (int row = 0; row < 6; row++) table.edit(journal, 0, row, (double) row);
+        assertEquals(4, journal.getPendingCount());
+        assertEquals(4, journal.rollback(table));
+        assertEquals(0.0, table.get(0, 0));
+        assertEquals(1.0, table.get(0, 1));
+        assertNull(table.get(0, 2));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testClear() {
+        EditJournal journal = new EditJournal();
+        Table table = new Table();
+        table.edit(journal, 0, 0, 1.0);
+        journal.commit();
+        table.edit(journal, 0, 1, 2.0);
+        journal.clear();
+        assertEquals(0, journal.size());
+        assertFalse(journal.hasPendingEdits());
+        assertFalse(journal.canUndo());
+        table.edit(journal, 0, 1, 3.0);
+        assertEquals(1, journal.getPendingCount());
+    }
+
+    // Случайные правки, принятия, откаты, отмены и повторы против списка версий таблицы
+    @org.junit.jupiter.api.Test
+    void testRandomOperationsMatchVersions() {
+        Random random = new Random(18);
+        EditJournal journal = new EditJournal();
+        Table table = new Table();
+        List<Map<Long, Object>> versions = new ArrayList<>();
+        versions.add(table.snapshot());
+        int current = 0;
+        for (int step = 0; step < 20000; step++) {
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                Object value = random.nextInt(4) == 0 ? null : random.nextBoolean() ? (Object) random.nextDouble() : "s" + random.nextInt(5);
+                table.edit(journal, random.nextInt(3), random.nextInt(8), value);
+            } else if (operation == 5) {
+                if (journal.commit() > 0) {
+                    while (versions.size() > current + 1) versions.remove(versions.size() - 1);
+                    versions.add(table.snapshot());
+                    current++;
+                }
+            } else if (operation == 6) {
+                journal.rollback(table);
+                assertEquals(versions.get(current), table.cells);
+            } else if (operation < 9) {
+                if (journal.undo(table) > 0) current--;
+                if (!journal.hasPendingEdits()) assertEquals(versions.get(current), table.cells);
+            } else {
+                if (journal.redo(table) > 0) current++;
+                if (!journal.hasPendingEdits()) assertEquals(versions.get(current), table.cells);
+            }
+        }
+    }
+
+    // Таблица ячеек: правка пишется в таблицу и в журнал, как это делает DataFrameTableModel
+    private static class Table implements EditJournal.Applier {
+        private final Map<Long, Object> cells = new HashMap<>();
+
+        void edit(EditJournal journal, int column, int row, Object value) {
+            Object old = get(column, row);
+            apply(column, row, value);
+            journal.record(column, row, old, value);
+        }
+
+        Object get(int column, int row) {
+            return cells.get(key(column, row));
+        }
+
+        @Override
+        public void apply(int column, int row, Object value) {
+            if (value == null) cells.remove(key(column, row));
+            else cells.put(key(column, row), value);
+        }
+
+        Map<Long, Object> snapshot() {
+            return new HashMap<>(cells);
+        }
+
+        private static long key(int column, int row) {
+            return (long) column << 32 | row;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package data.column;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Типизированный столбец таблицы. Конкретный класс выбирается по типам значений:
+// только числа - NumericColumn, только строки - StringColumn, смешанные - ObjectColumn
+public abstract class Column {
+    private static final AtomicLong ID_SEQUENCE = new AtomicLong();
+
+    // Идентификатор экземпляра и номер версии - ключ для кэша результатов стратегий
+    private final long id = ID_SEQUENCE.incrementAndGet();
+    private volatile long version;
+
+    public long getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // Вызывается владельцем столбца после каждого изменения данных
+    public void markModified() {
+        version++;
+    }
+
+    public abstract int size();
+
+    public abstract boolean isValid(int row);
+
+    // Упакованное значение ячейки для совместимости со старым кодом
+    public abstract Object get(int row);
+
+    public abstract void set(int row, Object value);
+
+    // Может ли столбец хранить значение без смены своего типа
+    public abstract boolean accepts(Object value);
+
+    public abstract void sort();
+
+    public abstract Column copy();
+
+    public boolean isNumeric() {
+        return false;
+    }
+
+    public int validCount() {
+        int count = 0;
+        for (int i = 0; i < size(); i++) {
+            if (isValid(i)) count++;
+        }
+        return count;
+    }
+
+    public static Column fromValues(List<?> values) {
+        boolean hasNumbers = false;
+        boolean hasStrings = false;
+        boolean hasOthers = false;
+        for (Object value : values) {
+            if (value == null) continue;
+            if (value instanceof Double) hasNumbers = true;
+            else if (value instanceof String) hasStrings = true;
+            else hasOthers = true;
+        }
+        Column column;
+        if (hasOthers || (hasNumbers && hasStrings)) column = new ObjectColumn(values.size());
+        else if (hasStrings) column = new StringColumn(values.size());
+        else column = new NumericColumn(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            column.set(i, values.get(i));
+        }
+        return column;
+    }
+}
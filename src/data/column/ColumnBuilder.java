@@ -0,0 +1,148 @@
+package data.column;
+
+import java.util.Arrays;
+
+// Накопитель значений столбца при загрузке. Числа пишутся в double[], строки - в String[];
+// каждый массив заводится только при первом значении своего типа, а ожидаемый тип столбца
+// (по выборке строк файла) позволяет сразу выделить нужный массив нужного размера.
+// Итоговый тип столбца выбирается в build() так же, как в Column.fromValues
+public class ColumnBuilder {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private double[] values;
+    private String[] strings;
+    private int capacity;
+    private int size;
+    private boolean hasNumbers;
+    private boolean hasStrings;
+
+    public ColumnBuilder() {
+        this(null, INITIAL_CAPACITY);
+    }
+
+    public ColumnBuilder(int capacity) {
+        this(null, capacity);
+    }
+
+    public ColumnBuilder(ColumnType expectedType, int capacity) {
+        this.capacity = Math.max(capacity, 1);
+        if (expectedType == ColumnType.NUMERIC || expectedType == ColumnType.MIXED) values = new double[this.capacity];
+        if (expectedType == ColumnType.STRING || expectedType == ColumnType.MIXED) strings = new String[this.capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public ColumnType getType() {
+        return ColumnType.of(hasNumbers, hasStrings);
+    }
+
+    public void appendDouble(double value) {
+        ensureCapacity(size + 1);
+        if (values == null) allocateValues();
+        values[size++] = value;
+        if (!Double.isNaN(value)) hasNumbers = true;
+    }
+
+    public void appendString(String value) {
+        if (value == null) {
+            appendNull();
+            return;
+        }
+        ensureCapacity(size + 1);
+        if (strings == null) strings = new String[capacity];
+        if (values != null) values[size] = Double.NaN;
+        strings[size++] = value;
+        hasStrings = true;
+    }
+
+    public void appendNull() {
+        ensureCapacity(size + 1);
+        if (values != null) values[size] = Double.NaN;
+        size++;
+    }
+
+    // Дополняет столбец пустыми ячейками до заданной длины
+    public void padTo(int length) {
+        while (size < length) appendNull();
+    }
+
+    // Дописывает в конец содержимое другого накопителя (например, результат разбора следующего куска файла)
+    public void appendAll(ColumnBuilder other) {
+        ensureCapacity(size + other.size);
+        if (other.values != null) {
+            if (values == null) allocateValues();
+            System.arraycopy(other.values, 0, values, size, other.size);
+        } else if (values != null) {
+            Arrays.fill(values, size, size + other.size, Double.NaN);
+        }
+        if (other.strings != null) {
+            if (strings == null) strings = new String[capacity];
+            System.arraycopy(other.strings, 0, strings, size, other.size);
+        }
+        size += other.size;
+        hasNumbers |= other.hasNumbers;
+        hasStrings |= other.hasStrings;
+    }
+
+    // Копия первых count ячеек, например для предварительного просмотра во время загрузки
+    public ColumnBuilder head(int count) {
+        count = Math.min(count, size);
+        ColumnBuilder head = new ColumnBuilder(count);
+        for (int i = 0; i < count; i++) {
+            if (strings != null && strings[i] != null) head.appendString(strings[i]);
+            else if (values != null) head.appendDouble(values[i]);
+            else head.appendNull();
+        }
+        return head;
+    }
+
+    // Дописывает числа в столбец вне кучи; пустые ячейки пишутся как NaN
+    public void appendTo(MappedNumericColumn target) {
+        if (values == null) target.appendNulls(size);
+        else target.append(values, 0, size);
+    }
+
+    public Column build() {
+        switch (getType()) {
+            case MIXED: {
+                ObjectColumn column = new ObjectColumn(size);
+                for (int i = 0; i < size; i++) {
+                    if (strings[i] != null) column.set(i, strings[i]);
+                    else if (!Double.isNaN(values[i])) column.set(i, values[i]);
+                }
+                return column;
+            }
+            case STRING: {
+                StringColumn column = new StringColumn(size);
+                for (int i = 0; i < size; i++) column.setString(i, strings[i]);
+                return column;
+            }
+            default: {
+                if (values == null) return new NumericColumn(size);
+                ValidityBitmap validity = new ValidityBitmap(size);
+                for (int i = 0; i < size; i++) {
+                    if (!Double.isNaN(values[i])) validity.set(i, true);
+                }
+                double[] columnValues = values.length == size ? values : Arrays.copyOf(values, size);
+                values = null;
+                strings = null;
+                return new NumericColumn(columnValues, validity, size);
+            }
+        }
+    }
+
+    // Ячейки, добавленные до появления первого числа, пустые
+    private void allocateValues() {
+        values = new double[capacity];
+        Arrays.fill(values, 0, size, Double.NaN);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= capacity) return;
+        capacity = Math.max(required, capacity + (capacity >> 1) + 1);
+        if (values != null) values = Arrays.copyOf(values, capacity);
+        if (strings != null) strings = Arrays.copyOf(strings, capacity);
+    }
+}
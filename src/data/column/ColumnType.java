@@ -0,0 +1,11 @@
+package data.column;
+
+// Тип столбца, определяемый по его значениям до построения самого столбца
+public enum ColumnType {
+    NUMERIC, STRING, MIXED;
+
+    public static ColumnType of(boolean hasNumbers, boolean hasStrings) {
+        if (hasNumbers && hasStrings) return MIXED;
+        return hasStrings ? STRING : NUMERIC;
+    }
+}
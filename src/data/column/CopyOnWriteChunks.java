@@ -0,0 +1,78 @@
+package data.column;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+// Массив столбца, разбитый на куски по CHUNK_SIZE элементов, с копированием при записи.
+// snapshot() отдает копию, которая разделяет с исходным массивом все куски; перед первой записью
+// в разделяемый кусок каждая из сторон копирует себе только этот кусок.
+// A - тип куска (double[], int[], long[], Object[])
+final class CopyOnWriteChunks<A> {
+    static final int CHUNK_SHIFT = 14;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final UnaryOperator<A> copier;
+    private final IntFunction<A> allocator;
+    private Object[] chunks;
+    private boolean[] shared;
+
+    CopyOnWriteChunks(int length, IntFunction<A> allocator, UnaryOperator<A> copier) {
+        this.allocator = allocator;
+        this.copier = copier;
+        this.chunks = new Object[chunkCount(length)];
+        this.shared = new boolean[chunks.length];
+        for (int i = 0; i < chunks.length; i++) chunks[i] = allocator.apply(CHUNK_SIZE);
+    }
+
+    private CopyOnWriteChunks(CopyOnWriteChunks<A> other) {
+        this.allocator = other.allocator;
+        this.copier = other.copier;
+        this.chunks = other.chunks.clone();
+        this.shared = new boolean[chunks.length];
+        Arrays.fill(shared, true);
+    }
+
+    static int chunkCount(long length) {
+        return (int) ((length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+    }
+
+    int chunkCount() {
+        return chunks.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    A read(int chunk) {
+        return (A) chunks[chunk];
+    }
+
+    // Кусок для записи: разделяемый кусок сначала копируется
+    A write(int chunk) {
+        if (shared[chunk]) {
+            chunks[chunk] = copier.apply(read(chunk));
+            shared[chunk] = false;
+        }
+        return read(chunk);
+    }
+
+    // Замена куска целиком; новый кусок принадлежит только этому массиву
+    void set(int chunk, A value) {
+        chunks[chunk] = value;
+        shared[chunk] = false;
+    }
+
+    CopyOnWriteChunks<A> snapshot() {
+        Arrays.fill(shared, true);
+        return new CopyOnWriteChunks<>(this);
+    }
+
+    // Новые куски при росте массива заводятся пустыми, лишние при уменьшении отбрасываются
+    void resize(int length) {
+        int oldCount = chunks.length;
+        int newCount = chunkCount(length);
+        chunks = Arrays.copyOf(chunks, newCount);
+        shared = Arrays.copyOf(shared, newCount);
+        for (int i = oldCount; i < newCount; i++) chunks[i] = allocator.apply(CHUNK_SIZE);
+    }
+}
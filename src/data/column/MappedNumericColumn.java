@@ -0,0 +1,282 @@
+package data.column;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static data.column.CopyOnWriteChunks.CHUNK_MASK;
+import static data.column.CopyOnWriteChunks.CHUNK_SHIFT;
+import static data.column.CopyOnWriteChunks.CHUNK_SIZE;
+
+// Числовой столбец вне кучи: значения (little-endian double) лежат в отображенном в память файле
+// сегментами по 2^24 значений, страницы подгружает и вытесняет ОС. Пропуски хранятся как NaN,
+// отдельной маски нет, так что на куче остаются только ссылки на сегменты.
+// Сегменты после заполнения не меняются: правка ячейки копирует ее кусок на кучу (overlay),
+// поэтому файл кэша отображается только для чтения, а copy() делит с исходным столбцом и
+// сегменты, и куски правок. Временные столбцы (загрузка больших файлов, сортировка) живут во
+// временном файле, который растет по сегментам; после заполнения канал закрывается (close),
+// файл удаляется, а отображенные сегменты остаются доступны до сборки мусора
+public class MappedNumericColumn extends NumericColumn {
+    private static final int SEGMENT_SHIFT = 24;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+    private static final int RUN_SIZE = 1 << 20;
+
+    private DoubleBuffer[] segments;
+    private int size;
+    // Канал временного файла, через который столбец дописывается; null у столбцов из кэша, копий
+    // и после close
+    private FileChannel channel;
+    // Измененные куски; null - кусок читается из сегмента
+    private CopyOnWriteChunks<double[]> overlay;
+
+    private MappedNumericColumn(DoubleBuffer[] segments, int size, FileChannel channel) {
+        this(segments, size, channel, newOverlay());
+    }
+
+    private MappedNumericColumn(DoubleBuffer[] segments, int size, FileChannel channel,
+                                CopyOnWriteChunks<double[]> overlay) {
+        this.segments = segments;
+        this.size = size;
+        this.channel = channel;
+        this.overlay = overlay;
+    }
+
+    private static CopyOnWriteChunks<double[]> newOverlay() {
+        return new CopyOnWriteChunks<>(0, length -> null, chunk -> chunk == null ? null : chunk.clone());
+    }
+
+    // Отображение size значений файла начиная с offset только для чтения
+    public static MappedNumericColumn map(FileChannel channel, long offset, int size) throws IOException {
+        DoubleBuffer[] segments = new DoubleBuffer[segmentCount(size)];
+        for (int i = 0; i < segments.length; i++) {
+            long length = Math.min(SEGMENT_SIZE, size - ((long) i << SEGMENT_SHIFT));
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + ((long) i << SEGMENT_SHIFT) * Double.BYTES,
+                    length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+        return new MappedNumericColumn(segments, size, null);
+    }
+
+    // Пустой столбец во временном файле, заполняется через append до первой правки ячеек и close
+    public static MappedNumericColumn createTemporary() throws IOException {
+        Path file = Files.createTempFile("dataframe", ".column");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        return new MappedNumericColumn(new DoubleBuffer[0], 0, channel);
+    }
+
+    private static int segmentCount(int size) {
+        return (int) (((long) size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+    }
+
+    public void append(double value) {
+        checkAppendable();
+        ensureSegment(size);
+        segments[size >>> SEGMENT_SHIFT].put(size & SEGMENT_MASK, value);
+        size++;
+    }
+
+    public void append(double[] values, int from, int to) {
+        checkAppendable();
+        while (from < to) {
+            ensureSegment(size);
+            int offset = size & SEGMENT_MASK;
+            int length = Math.min(to - from, SEGMENT_SIZE - offset);
+            segments[size >>> SEGMENT_SHIFT].put(offset, values, from, length);
+            size += length;
+            from += length;
+        }
+    }
+
+    public void appendNulls(int count) {
+        for (int i = 0; i < count; i++) append(Double.NaN);
+    }
+
+    private void checkAppendable() {
+        if (channel == null) throw new IllegalStateException("Заполненный столбец нельзя дописывать");
+    }
+
+    private void ensureSegment(int row) {
+        int segment = row >>> SEGMENT_SHIFT;
+        if (segment < segments.length) return;
+        try {
+            segments = Arrays.copyOf(segments, segment + 1);
+            segments[segment] = channel.map(FileChannel.MapMode.READ_WRITE, ((long) segment << SEGMENT_SHIFT) * Double.BYTES,
+                    (long) SEGMENT_SIZE * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isValid(int row) {
+        return !Double.isNaN(getDouble(row));
+    }
+
+    @Override
+    public double getDouble(int row) {
+        int chunk = row >>> CHUNK_SHIFT;
+        if (chunk < overlay.chunkCount()) {
+            double[] edited = overlay.read(chunk);
+            if (edited != null) return edited[row & CHUNK_MASK];
+        }
+        return segments[row >>> SEGMENT_SHIFT].get(row & SEGMENT_MASK);
+    }
+
+    @Override
+    public void setDouble(int row, double value) {
+        int chunk = row >>> CHUNK_SHIFT;
+        if (chunk >= overlay.chunkCount()) overlay.resize(size);
+        double[] edited = overlay.write(chunk);
+        if (edited == null) {
+            edited = new double[CHUNK_SIZE];
+            int from = chunk << CHUNK_SHIFT;
+            segments[from >>> SEGMENT_SHIFT].get(from & SEGMENT_MASK, edited, 0, Math.min(CHUNK_SIZE, size - from));
+            overlay.set(chunk, edited);
+        }
+        edited[row & CHUNK_MASK] = value;
+    }
+
+    @Override
+    public void setNull(int row) {
+        setDouble(row, Double.NaN);
+    }
+
+    @Override
+    public void copyTo(int from, int to, double[] destination, int destinationPos) {
+        while (from < to) {
+            int chunk = from >>> CHUNK_SHIFT;
+            int offset = from & CHUNK_MASK;
+            int length = Math.min(to - from, CHUNK_SIZE - offset);
+            double[] edited = chunk < overlay.chunkCount() ? overlay.read(chunk) : null;
+            if (edited != null) System.arraycopy(edited, offset, destination, destinationPos, length);
+            else segments[from >>> SEGMENT_SHIFT].get(from & SEGMENT_MASK, destination, destinationPos, length);
+            from += length;
+            destinationPos += length;
+        }
+    }
+
+    @Override
+    public Object get(int row) {
+        return getDouble(row);
+    }
+
+    @Override
+    public int validCount() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (isValid(i)) count++;
+        }
+        return count;
+    }
+
+    // Внешняя сортировка: куски по RUN_SIZE значений сортируются на куче (Arrays.sort ставит NaN
+    // в конец) и пишутся во временный столбец, затем сливаются в новый временный столбец.
+    // Старые сегменты не меняются - их могут читать копии столбца, поэтому закрывается только канал
+    @Override
+    public void sort() {
+        MappedNumericColumn runs = newTemporary();
+        double[] buffer = new double[Math.min(size, RUN_SIZE)];
+        for (int from = 0; from < size; from += RUN_SIZE) {
+            int length = Math.min(RUN_SIZE, size - from);
+            copyTo(from, from + length, buffer, 0);
+            Arrays.sort(buffer, 0, length);
+            runs.append(buffer, 0, length);
+        }
+        MappedNumericColumn sorted = runs;
+        if (size > RUN_SIZE) {
+            sorted = newTemporary();
+            mergeRuns(runs, sorted);
+            runs.close();
+        }
+        sorted.close();
+        close();
+        segments = sorted.segments;
+        overlay = newOverlay();
+    }
+
+    private static void mergeRuns(MappedNumericColumn runs, MappedNumericColumn target) {
+        int size = runs.size;
+        int runCount = (size + RUN_SIZE - 1) / RUN_SIZE;
+        int[] positions = new int[runCount];
+        int[] ends = new int[runCount];
+        // Двоичная куча номеров кусков по текущему значению
+        int[] heap = new int[runCount];
+        for (int r = 0; r < runCount; r++) {
+            positions[r] = r * RUN_SIZE;
+            ends[r] = Math.min(size, positions[r] + RUN_SIZE);
+            heap[r] = r;
+        }
+        int heapSize = runCount;
+        for (int i = heapSize / 2 - 1; i >= 0; i--) siftDown(runs, heap, heapSize, i, positions);
+        double[] output = new double[COPY_BUFFER_SIZE];
+        int outputLength = 0;
+        while (heapSize > 0) {
+            int r = heap[0];
+            output[outputLength++] = runs.getDouble(positions[r]++);
+            if (outputLength == output.length) {
+                target.append(output, 0, outputLength);
+                outputLength = 0;
+            }
+            if (positions[r] == ends[r]) heap[0] = heap[--heapSize];
+            siftDown(runs, heap, heapSize, 0, positions);
+        }
+        target.append(output, 0, outputLength);
+    }
+
+    private static void siftDown(MappedNumericColumn runs, int[] heap, int heapSize, int index, int[] positions) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < heapSize && less(runs, heap[left], heap[smallest], positions)) smallest = left;
+            if (right < heapSize && less(runs, heap[right], heap[smallest], positions)) smallest = right;
+            if (smallest == index) return;
+            int swap = heap[index];
+            heap[index] = heap[smallest];
+            heap[smallest] = swap;
+            index = smallest;
+        }
+    }
+
+    // Порядок Double.compare, как у Arrays.sort: NaN (пропуски) после всех чисел
+    private static boolean less(MappedNumericColumn runs, int run, int other, int[] positions) {
+        return Double.compare(runs.getDouble(positions[run]), runs.getDouble(positions[other])) < 0;
+    }
+
+    // Копия разделяет с исходным столбцом сегменты и куски правок; дописывать ее нельзя
+    @Override
+    public MappedNumericColumn copy() {
+        return new MappedNumericColumn(segments.clone(), size, null, overlay.snapshot());
+    }
+
+    // Конец заполнения: канал временного файла закрывается, и файл удаляется (DELETE_ON_CLOSE).
+    // Отображенные сегменты остаются доступны и после закрытия канала
+    public void close() {
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        channel = null;
+    }
+
+    private static MappedNumericColumn newTemporary() {
+        try {
+            return createTemporary();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
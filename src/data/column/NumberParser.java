@@ -0,0 +1,124 @@
+package data.column;
+
+// Разбор чисел без исключений: проверяет синтаксис Double.parseDouble по диапазону символов и
+// сообщает об успехе результатом, а не NumberFormatException. Целые и короткие десятичные числа
+// (до 18 значащих цифр в long, точный случай - мантисса до 2^53 и порядок до 22) собираются
+// вручную, остальные отдаются Double.parseDouble уже после проверки синтаксиса
+public final class NumberParser {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_MANTISSA_DIGITS = 18;
+    private static final int MAX_EXPONENT = 100_000;
+
+    private double value;
+
+    // Значение последнего успешного разбора
+    public double getValue() {
+        return value;
+    }
+
+    public boolean parse(String text) {
+        return parse(text.toCharArray(), 0, text.length());
+    }
+
+    // Пробельные символы по краям пропускаются, как в String.trim
+    public boolean parse(char[] chars, int from, int to) {
+        while (from < to && chars[from] <= ' ') from++;
+        while (to > from && chars[to - 1] <= ' ') to--;
+        if (from == to) return false;
+
+        int i = from;
+        boolean negative = false;
+        char c = chars[i];
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            if (++i == to) return false;
+            c = chars[i];
+        }
+        if (c == 'N') return parseWord(chars, i, to, "NaN", Double.NaN);
+        if (c == 'I') return parseWord(chars, i, to, "Infinity", negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY);
+        if (c == '0' && i + 1 < to && (chars[i + 1] == 'x' || chars[i + 1] == 'X')) return parseHex(chars, from, to);
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        boolean truncated = false;
+        for (; i < to && (c = chars[i]) >= '0' && c <= '9'; i++) {
+            anyDigit = true;
+            if (digits < MAX_MANTISSA_DIGITS) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) digits++;
+            } else {
+                exponent++;
+                truncated |= c != '0';
+            }
+        }
+        if (i < to && chars[i] == '.') {
+            for (i++; i < to && (c = chars[i]) >= '0' && c <= '9'; i++) {
+                anyDigit = true;
+                if (digits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) digits++;
+                    exponent--;
+                } else {
+                    truncated |= c != '0';
+                }
+            }
+        }
+        if (!anyDigit) return false;
+        if (i < to && (chars[i] == 'e' || chars[i] == 'E')) {
+            if (++i == to) return false;
+            boolean negativeExponent = false;
+            if (chars[i] == '-' || chars[i] == '+') {
+                negativeExponent = chars[i] == '-';
+                i++;
+            }
+            int exponentStart = i;
+            int explicitExponent = 0;
+            for (; i < to && (c = chars[i]) >= '0' && c <= '9'; i++) {
+                if (explicitExponent < MAX_EXPONENT) explicitExponent = explicitExponent * 10 + (c - '0');
+            }
+            if (i == exponentStart) return false;
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i < to && (chars[i] == 'd' || chars[i] == 'D' || chars[i] == 'f' || chars[i] == 'F')) i++;
+        if (i != to) return false;
+
+        double result;
+        if (mantissa == 0) {
+            result = 0.0;
+        } else if (!truncated && mantissa <= MAX_EXACT_MANTISSA && Math.abs(exponent) < POWERS_OF_TEN.length) {
+            // Оба операнда точны, поэтому одно умножение или деление дает правильно округленный результат
+            result = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            result = Double.parseDouble(new String(chars, from, to - from));
+            value = result;
+            return true;
+        }
+        value = negative ? -result : result;
+        return true;
+    }
+
+    private boolean parseWord(char[] chars, int from, int to, String word, double wordValue) {
+        if (to - from != word.length()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (chars[from + i] != word.charAt(i)) return false;
+        }
+        value = wordValue;
+        return true;
+    }
+
+    // Шестнадцатеричная запись (0x1p3) в данных почти не встречается, ее проверяет сам Double.parseDouble
+    private boolean parseHex(char[] chars, int from, int to) {
+        try {
+            value = Double.parseDouble(new String(chars, from, to - from));
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package data.column;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NumberParserTest {
+    private static final int RANDOM_INPUTS = 2_000_000;
+    private static final String[] WORDS = {"NaN", "Infinity", "0x1p3", "0X1.8P-2", "0x", "e5", ".", "-", "+.e1"};
+    private static final String NOISE = "0123456789.eE+-dDfFxXpP aN,";
+
+    @org.junit.jupiter.api.Test
+    void testMatchesParseDoubleOnRandomInputs() {
+        Random random = new Random(9);
+        NumberParser parser = new NumberParser();
+        for (int i = 0; i < RANDOM_INPUTS; i++) {
+            String text = randomInput(random);
+            assertSameAsParseDouble(parser, text);
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testKnownCases() {
+        NumberParser parser = new NumberParser();
+        String[] cases = {"0", "-0", "+0.0", "1", "-1.5", "  42  ", "\t7\n", "1e22", "1e23", "9007199254740993",
+                "123456789012345678901234567890", "0.1", "1.7976931348623157e308", "1e309", "4.9e-324", "1e-400",
+                "2.2250738585072014E-308", "1.", ".5", "5d", "5F", "1e+5", "1e", "--1", "1,5", "", "   ",
+                "NaN", "-Infinity", "+NaN", "nan", "0x10", "0x1p-2", "00012", "1_000", "٣"};
+        for (String text : cases) assertSameAsParseDouble(parser, text);
+    }
+
+    @org.junit.jupiter.api.Test
+    void testRangeOfCharArray() {
+        NumberParser parser = new NumberParser();
+        char[] chars = "ab12.5cd".toCharArray();
+        assertTrue(parser.parse(chars, 2, 6));
+        assertEquals(12.5, parser.getValue());
+        assertFalse(parser.parse(chars, 1, 6));
+    }
+
+    private static void assertSameAsParseDouble(NumberParser parser, String text) {
+        Double expected;
+        try {
+            expected = Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            expected = null;
+        }
+        boolean parsed = parser.parse(text);
+        if (expected == null) {
+            assertFalse(parsed, "Разобрано недопустимое число '" + text + "'");
+        } else {
+            assertTrue(parsed, "Не разобрано число '" + text + "'");
+            assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(parser.getValue()), "'" + text + "'");
+        }
+    }
+
+    private static String randomInput(Random random) {
+        switch (random.nextInt(6)) {
+            case 0:
+                return Double.toString(Double.longBitsToDouble(random.nextLong()));
+            case 1:
+                return Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+            case 2:
+                return Long.toString(random.nextLong() >> random.nextInt(64));
+            case 3:
+                return decimal(random);
+            case 4:
+                return WORDS[random.nextInt(WORDS.length)];
+            default:
+                StringBuilder noise = new StringBuilder();
+                for (int i = random.nextInt(8); i >= 0; i--) noise.append(NOISE.charAt(random.nextInt(NOISE.length())));
+                return noise.toString();
+        }
+    }
+
+    // Десятичная запись с произвольным числом цифр, точкой, порядком, суффиксом и пробелами
+    private static String decimal(Random random) {
+        StringBuilder text = new StringBuilder();
+        if (random.nextInt(4) == 0) text.append(' ');
+        if (random.nextBoolean()) text.append(random.nextBoolean() ? '-' : '+');
+        for (int i = random.nextInt(25); i > 0; i--) text.append((char) ('0' + random.nextInt(10)));
+        if (random.nextBoolean()) {
+            text.append('.');
+            for (int i = random.nextInt(25); i > 0; i--) text.append((char) ('0' + random.nextInt(10)));
+        }
+        if (random.nextInt(3) == 0) {
+            text.append(random.nextBoolean() ? 'e' : 'E');
+            if (random.nextBoolean()) text.append(random.nextBoolean() ? '-' : '+');
+            text.append(random.nextInt(random.nextBoolean() ? 30 : 400));
+        }
+        if (random.nextInt(10) == 0) text.append("dDfF".charAt(random.nextInt(4)));
+        if (random.nextInt(4) == 0) text.append('\t');
+        return text.toString();
+    }
+}
@@ -0,0 +1,122 @@
+package data.column;
+
+import java.util.Arrays;
+
+import static data.column.CopyOnWriteChunks.CHUNK_MASK;
+import static data.column.CopyOnWriteChunks.CHUNK_SHIFT;
+import static data.column.CopyOnWriteChunks.CHUNK_SIZE;
+
+// Числовой столбец: значения в кусках double[], пропуски (null и NaN) отмечаются в битовой маске.
+// Куски копируются при записи, поэтому copy() дешевая и годится для снимков версий таблицы
+public class NumericColumn extends Column {
+    private CopyOnWriteChunks<double[]> values;
+    private ValidityBitmap validity;
+    private int size;
+
+    public NumericColumn(int size) {
+        this(newValues(size), new ValidityBitmap(size), size);
+        for (int c = 0; c < values.chunkCount(); c++) Arrays.fill(values.write(c), Double.NaN);
+    }
+
+    public NumericColumn(double[] values, ValidityBitmap validity, int size) {
+        this(newValues(size), validity, size);
+        for (int c = 0; c < this.values.chunkCount(); c++) {
+            int from = c << CHUNK_SHIFT;
+            System.arraycopy(values, from, this.values.write(c), 0, Math.min(CHUNK_SIZE, size - from));
+        }
+    }
+
+    private NumericColumn(CopyOnWriteChunks<double[]> values, ValidityBitmap validity, int size) {
+        this.values = values;
+        this.validity = validity;
+        this.size = size;
+    }
+
+    // Для наследников с собственным хранилищем значений (см. MappedNumericColumn)
+    protected NumericColumn() {
+    }
+
+    private static CopyOnWriteChunks<double[]> newValues(int size) {
+        return new CopyOnWriteChunks<>(size, double[]::new, double[]::clone);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isNumeric() {
+        return true;
+    }
+
+    @Override
+    public boolean isValid(int row) {
+        return validity.get(row);
+    }
+
+    // Примитивный доступ без упаковки; для пропусков возвращает NaN
+    public double getDouble(int row) {
+        return values.read(row >>> CHUNK_SHIFT)[row & CHUNK_MASK];
+    }
+
+    public void setDouble(int row, double value) {
+        values.write(row >>> CHUNK_SHIFT)[row & CHUNK_MASK] = value;
+        validity.set(row, !Double.isNaN(value));
+    }
+
+    public void setNull(int row) {
+        setDouble(row, Double.NaN);
+    }
+
+    // Копирование диапазона [from, to) в буфер вызывающего кода
+    public void copyTo(int from, int to, double[] destination, int destinationPos) {
+        while (from < to) {
+            int offset = from & CHUNK_MASK;
+            int length = Math.min(to - from, CHUNK_SIZE - offset);
+            System.arraycopy(values.read(from >>> CHUNK_SHIFT), offset, destination, destinationPos, length);
+            from += length;
+            destinationPos += length;
+        }
+    }
+
+    @Override
+    public Object get(int row) {
+        return getDouble(row);
+    }
+
+    @Override
+    public void set(int row, Object value) {
+        if (value == null) setNull(row);
+        else setDouble(row, ((Number) value).doubleValue());
+    }
+
+    @Override
+    public boolean accepts(Object value) {
+        return value == null || value instanceof Number;
+    }
+
+    @Override
+    public int validCount() {
+        return validity.cardinality();
+    }
+
+    @Override
+    public void sort() {
+        double[] sorted = new double[validity.cardinality()];
+        int validCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (validity.get(i)) sorted[validCount++] = getDouble(i);
+        }
+        Arrays.sort(sorted);
+        for (int i = 0; i < size; i++) values.write(i >>> CHUNK_SHIFT)[i & CHUNK_MASK] = i < validCount ? sorted[i] : Double.NaN;
+        validity.setAll(false);
+        for (int i = 0; i < validCount; i++) validity.set(i, true);
+    }
+
+    // Копия разделяет с исходным столбцом все куски до первой записи в них
+    @Override
+    public NumericColumn copy() {
+        return new NumericColumn(values.snapshot(), validity.copy(), size);
+    }
+}
@@ -0,0 +1,71 @@
+package data.column;
+
+import java.util.Arrays;
+
+import static data.column.CopyOnWriteChunks.CHUNK_MASK;
+import static data.column.CopyOnWriteChunks.CHUNK_SHIFT;
+
+// Столбец со смешанными значениями (числа и строки вперемешку), хранится без преобразований
+// кусками с копированием при записи
+public class ObjectColumn extends Column {
+    private CopyOnWriteChunks<Object[]> values;
+    private int size;
+
+    public ObjectColumn(int size) {
+        this(new CopyOnWriteChunks<>(size, Object[]::new, Object[]::clone), size);
+    }
+
+    private ObjectColumn(CopyOnWriteChunks<Object[]> values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    public static ObjectColumn copyOf(Column column) {
+        ObjectColumn copy = new ObjectColumn(column.size());
+        for (int i = 0; i < column.size(); i++) {
+            copy.set(i, column.isValid(i) ? column.get(i) : null);
+        }
+        return copy;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isValid(int row) {
+        return get(row) != null;
+    }
+
+    @Override
+    public Object get(int row) {
+        return values.read(row >>> CHUNK_SHIFT)[row & CHUNK_MASK];
+    }
+
+    @Override
+    public void set(int row, Object value) {
+        values.write(row >>> CHUNK_SHIFT)[row & CHUNK_MASK] = value;
+    }
+
+    @Override
+    public boolean accepts(Object value) {
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sort() {
+        Object[] sorted = new Object[size];
+        for (int i = 0; i < size; i++) sorted[i] = get(i);
+        // Как и Collections.sort, бросает ClassCastException на несравнимых значениях
+        Arrays.sort(sorted, (a, b) -> ((Comparable<Object>) a).compareTo(b));
+        for (int i = 0; i < size; i++) set(i, sorted[i]);
+    }
+
+    // Копия разделяет с исходным столбцом все куски до первой записи в них
+    @Override
+    public ObjectColumn copy() {
+        return new ObjectColumn(values.snapshot(), size);
+    }
+}
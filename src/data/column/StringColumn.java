@@ -0,0 +1,146 @@
+package data.column;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static data.column.CopyOnWriteChunks.CHUNK_MASK;
+import static data.column.CopyOnWriteChunks.CHUNK_SHIFT;
+import static data.column.CopyOnWriteChunks.CHUNK_SIZE;
+
+// Строковый столбец со словарным кодированием: каждая уникальная строка хранится один раз,
+// ячейки содержат только int-коды из словаря. Коды хранятся кусками с копированием при записи,
+// словарь копия делит с исходным столбцом, пока в одном из них не появится новая строка
+public class StringColumn extends Column {
+    private CopyOnWriteChunks<int[]> codes;
+    private ValidityBitmap validity;
+    private int size;
+    private ArrayList<String> dictionary;
+    private HashMap<String, Integer> dictionaryIndex;
+    private boolean dictionaryShared;
+
+    public StringColumn(int size) {
+        this(new int[size], new ValidityBitmap(size), size, new ArrayList<>());
+    }
+
+    public StringColumn(int[] codes, ValidityBitmap validity, int size, List<String> dictionary) {
+        this.codes = new CopyOnWriteChunks<>(size, int[]::new, int[]::clone);
+        for (int c = 0; c < this.codes.chunkCount(); c++) {
+            int from = c << CHUNK_SHIFT;
+            System.arraycopy(codes, from, this.codes.write(c), 0, Math.min(CHUNK_SIZE, size - from));
+        }
+        this.validity = validity;
+        this.size = size;
+        this.dictionary = new ArrayList<>(dictionary);
+        this.dictionaryIndex = new HashMap<>();
+        for (int i = 0; i < this.dictionary.size(); i++) dictionaryIndex.put(this.dictionary.get(i), i);
+    }
+
+    private StringColumn(StringColumn other) {
+        this.codes = other.codes.snapshot();
+        this.validity = other.validity.copy();
+        this.size = other.size;
+        this.dictionary = other.dictionary;
+        this.dictionaryIndex = other.dictionaryIndex;
+        this.dictionaryShared = true;
+        other.dictionaryShared = true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isValid(int row) {
+        return validity.get(row);
+    }
+
+    public int getCode(int row) {
+        return codes.read(row >>> CHUNK_SHIFT)[row & CHUNK_MASK];
+    }
+
+    public String getString(int row) {
+        return validity.get(row) ? dictionary.get(getCode(row)) : null;
+    }
+
+    public List<String> getDictionary() {
+        return dictionary;
+    }
+
+    public int encode(String value) {
+        Integer code = dictionaryIndex.get(value);
+        if (code == null) {
+            if (dictionaryShared) {
+                dictionary = new ArrayList<>(dictionary);
+                dictionaryIndex = new HashMap<>(dictionaryIndex);
+                dictionaryShared = false;
+            }
+            code = dictionary.size();
+            dictionary.add(value);
+            dictionaryIndex.put(value, code);
+        }
+        return code;
+    }
+
+    public void setString(int row, String value) {
+        int[] chunk = codes.write(row >>> CHUNK_SHIFT);
+        if (value == null) {
+            chunk[row & CHUNK_MASK] = 0;
+            validity.set(row, false);
+        } else {
+            chunk[row & CHUNK_MASK] = encode(value);
+            validity.set(row, true);
+        }
+    }
+
+    @Override
+    public Object get(int row) {
+        return getString(row);
+    }
+
+    @Override
+    public void set(int row, Object value) {
+        setString(row, (String) value);
+    }
+
+    @Override
+    public boolean accepts(Object value) {
+        return value == null || value instanceof String;
+    }
+
+    @Override
+    public int validCount() {
+        return validity.cardinality();
+    }
+
+    @Override
+    public void sort() {
+        // Сортировка подсчетом по кодам: порядок кодов задается отсортированным словарем
+        int[] counts = new int[dictionary.size()];
+        int validCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (validity.get(i)) {
+                counts[getCode(i)]++;
+                validCount++;
+            }
+        }
+        Integer[] order = new Integer[dictionary.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> dictionary.get(a).compareTo(dictionary.get(b)));
+        int row = 0;
+        for (int code : order) {
+            for (int j = 0; j < counts[code]; j++, row++) codes.write(row >>> CHUNK_SHIFT)[row & CHUNK_MASK] = code;
+        }
+        for (; row < size; row++) codes.write(row >>> CHUNK_SHIFT)[row & CHUNK_MASK] = 0;
+        validity.setAll(false);
+        for (int i = 0; i < validCount; i++) validity.set(i, true);
+    }
+
+    // Копия разделяет с исходным столбцом куски кодов и словарь до первой записи в них
+    @Override
+    public StringColumn copy() {
+        return new StringColumn(this);
+    }
+}
@@ -0,0 +1,91 @@
+package data.column;
+
+import java.util.Arrays;
+
+// Битовая маска заполненности ячеек столбца: 1 - значение есть, 0 - null/NaN.
+// Слова маски хранятся кусками с копированием при записи, как и значения столбцов
+public class ValidityBitmap {
+    // Слов в куске: кусок маски покрывает столько же строк, сколько кусок значений
+    private static final int WORD_SHIFT = CopyOnWriteChunks.CHUNK_SHIFT - 6;
+    private static final int WORD_MASK = (1 << WORD_SHIFT) - 1;
+
+    private CopyOnWriteChunks<long[]> words;
+    private int size;
+
+    public ValidityBitmap(int size) {
+        this(newWords(size), size);
+    }
+
+    private ValidityBitmap(CopyOnWriteChunks<long[]> words, int size) {
+        this.words = words;
+        this.size = size;
+    }
+
+    private static CopyOnWriteChunks<long[]> newWords(int size) {
+        return new CopyOnWriteChunks<>(size, rows -> new long[rows >>> 6], long[]::clone);
+    }
+
+    // Восстановление маски из слов, например прочитанных из файла кэша
+    public static ValidityBitmap fromWords(long[] words, int size) {
+        ValidityBitmap bitmap = new ValidityBitmap(size);
+        for (int c = 0; c < bitmap.words.chunkCount(); c++) {
+            int from = c << WORD_SHIFT;
+            System.arraycopy(words, from, bitmap.words.write(c), 0, Math.min(WORD_MASK + 1, words.length - from));
+        }
+        return bitmap;
+    }
+
+    public static int wordCount(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean get(int index) {
+        return (words.read(index >>> CopyOnWriteChunks.CHUNK_SHIFT)[(index >>> 6) & WORD_MASK] & (1L << index)) != 0;
+    }
+
+    public void set(int index, boolean valid) {
+        long[] chunk = words.write(index >>> CopyOnWriteChunks.CHUNK_SHIFT);
+        if (valid) chunk[(index >>> 6) & WORD_MASK] |= 1L << index;
+        else chunk[(index >>> 6) & WORD_MASK] &= ~(1L << index);
+    }
+
+    public void setAll(boolean valid) {
+        for (int c = 0; c < words.chunkCount(); c++) Arrays.fill(words.write(c), valid ? -1L : 0L);
+        clearTail();
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (int c = 0; c < words.chunkCount(); c++) {
+            for (long word : words.read(c)) count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public void resize(int newSize) {
+        int oldSize = size;
+        words.resize(newSize);
+        size = newSize;
+        if (newSize < oldSize) clearTail();
+    }
+
+    // Копия разделяет с маской все куски до первой записи в них
+    public ValidityBitmap copy() {
+        return new ValidityBitmap(words.snapshot(), size);
+    }
+
+    // Биты за последней строкой всегда нулевые, на этом держится cardinality()
+    private void clearTail() {
+        if (words.chunkCount() == 0) return;
+        int lastChunk = words.chunkCount() - 1;
+        int rows = size - (lastChunk << CopyOnWriteChunks.CHUNK_SHIFT);
+        long[] chunk = words.write(lastChunk);
+        int fullWords = rows >>> 6;
+        if ((rows & 63) != 0) chunk[fullWords++] &= (1L << rows) - 1;
+        Arrays.fill(chunk, fullWords, chunk.length, 0L);
+    }
+}
@@ -0,0 +1,75 @@
+package data.strategy;
+
+// Результат описательной статистики по одному столбцу
+public class ColumnDescription {
+    private final int count;
+    private final double sum;
+    private final double mean;
+    private final double variance;
+    private final double min;
+    private final double max;
+    private final double[] percents;
+    private final double[] quantiles;
+    private final boolean approximate;
+
+    public ColumnDescription(int count, double sum, double mean, double variance, double min, double max,
+                             double[] percents, double[] quantiles, boolean approximate) {
+        this.count = count;
+        this.sum = sum;
+        this.mean = mean;
+        this.variance = variance;
+        this.min = min;
+        this.max = max;
+        this.percents = percents;
+        this.quantiles = quantiles;
+        this.approximate = approximate;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getVariance() {
+        return variance;
+    }
+
+    public double getStd() {
+        return Math.sqrt(variance);
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double[] getPercents() {
+        return percents;
+    }
+
+    public double[] getQuantiles() {
+        return quantiles;
+    }
+
+    // Квантили получены из скетча, а не точным выбором
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    public double getQuantile(double percent) {
+        for (int i = 0; i < percents.length; i++) {
+            if (percents[i] == percent) return quantiles[i];
+        }
+        return Double.NaN;
+    }
+}
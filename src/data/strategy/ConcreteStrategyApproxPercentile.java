@@ -0,0 +1,15 @@
+package data.strategy;
+
+import data.DataFrame;
+
+public class ConcreteStrategyApproxPercentile implements Strategy {
+
+    // others[0] - доля (0..1), others[1] - необязательная допустимая ошибка ранга (по умолчанию 0.01)
+    @Override
+    public Double execute(DataFrame df, String key, Object... others) {
+        //System.out.println("Вызван метод execute() из ConcreteStrategyApproxPercentile...");
+        double percent = (Double) others[0];
+        double epsilon = others.length > 1 ? (Double) others[1] : QuantileSketch.DEFAULT_EPSILON;
+        return QuantileSketch.of(df.getColumn(key), epsilon).quantile(percent);
+    }
+}
@@ -0,0 +1,87 @@
+package data.strategy;
+
+import javax.swing.table.DefaultTableModel;
+import java.util.LinkedHashMap;
+
+// Описательная статистика по всем столбцам в виде, готовом для таблицы статистики
+public class DescribeResult {
+    private final LinkedHashMap<String, ColumnDescription> descriptions = new LinkedHashMap<>();
+    private final double[] percents;
+
+    public DescribeResult(double[] percents) {
+        this.percents = percents;
+    }
+
+    public void put(String key, ColumnDescription description) {
+        descriptions.put(key, description);
+    }
+
+    public ColumnDescription get(String key) {
+        return descriptions.get(key);
+    }
+
+    public LinkedHashMap<String, ColumnDescription> getDescriptions() {
+        return descriptions;
+    }
+
+    public double[] getPercents() {
+        return percents;
+    }
+
+    public String[] getStatFunctions() {
+        String[] statFunctions = new String[5 + percents.length];
+        statFunctions[0] = "count";
+        statFunctions[1] = "mean";
+        statFunctions[2] = "std";
+        statFunctions[3] = "min";
+        statFunctions[4] = "max";
+        for (int i = 0; i < percents.length; i++) statFunctions[5 + i] = percentName(percents[i]);
+        return statFunctions;
+    }
+
+    private static String percentName(double percent) {
+        if (percent == 0.25) return "1st quantile";
+        if (percent == 0.5) return "median";
+        if (percent == 0.75) return "3rd quantile";
+        return (percent * 100) + "%";
+    }
+
+    // Строки - статистические функции, первый столбец - их названия, далее по столбцу на каждый ключ
+    public DefaultTableModel toTableModel(String valueNameHeader) {
+        String[] header = new String[descriptions.size() + 1];
+        header[0] = valueNameHeader;
+        int index = 1;
+        for (String key : descriptions.keySet()) header[index++] = key;
+
+        DefaultTableModel tableModel = new DefaultTableModel(header, 0);
+        String[] statFunctions = getStatFunctions();
+        for (int i = 0; i < statFunctions.length; i++) {
+            String[] row = new String[header.length];
+            row[0] = statFunctions[i];
+            int j = 1;
+            for (ColumnDescription description : descriptions.values()) {
+                row[j++] = valueOf(description, i);
+            }
+            tableModel.addRow(row);
+        }
+        return tableModel;
+    }
+
+    private static String valueOf(ColumnDescription description, int statIndex) {
+        switch (statIndex) {
+            case 0:
+                return String.valueOf(description.getCount());
+            case 1:
+                return String.valueOf(description.getMean());
+            case 2:
+                return String.valueOf(description.getStd());
+            case 3:
+                return String.valueOf(description.getMin());
+            case 4:
+                return String.valueOf(description.getMax());
+            default:
+                String quantile = String.valueOf(description.getQuantiles()[statIndex - 5]);
+                return description.isApproximate() ? "~" + quantile : quantile;
+        }
+    }
+}
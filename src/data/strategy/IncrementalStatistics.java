@@ -0,0 +1,168 @@
+package data.strategy;
+
+import data.DataFrame;
+import data.DataFrameListener;
+import data.column.Column;
+import data.column.NumericColumn;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// Таблица статистики, которая поддерживается в актуальном состоянии при правке ячеек.
+// Каждая правка обновляет агрегаты столбца за O(1) (обратный и прямой шаг Уэлфорда);
+// min/max пересчитываются проходом по столбцу, только если удалено крайнее значение.
+// Скетч не умеет удалять значения, поэтому удаления копятся и, когда их больше epsilon * n,
+// скетч строится заново. При обновлении таблицы пересчитываются только измененные столбцы.
+// Правки в потоке Swing только копятся; агрегаты обновляются в getResult по снимку таблицы,
+// снятому вместе с накопленными правками, поэтому сам расчет может идти в фоне
+public class IncrementalStatistics implements DataFrameListener {
+    private final DataFrame df;
+    private final StatDescriber describer;
+    private final double[] percents;
+    private final HashMap<String, ColumnState> states = new HashMap<>();
+    private ArrayList<Edit> edits = new ArrayList<>();
+
+    public IncrementalStatistics(DataFrame df, StatDescriber describer, double... percents) {
+        this.df = df;
+        this.describer = describer;
+        this.percents = percents;
+        df.addListener(this);
+    }
+
+    public DataFrame getDataFrame() {
+        return df;
+    }
+
+    public void detach() {
+        df.removeListener(this);
+    }
+
+    @Override
+    public synchronized void valueChanged(String key, int row, Object oldValue, Object newValue) {
+        edits.add(new Edit(key, oldValue, newValue));
+    }
+
+    // Снимок таблицы и правок, накопленных до него; снимается там же, где пишется таблица
+    public synchronized Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot(df.clone(), edits);
+        edits = new ArrayList<>();
+        return snapshot;
+    }
+
+    // Статистика по снимку. Снимки обрабатываются по одному и в порядке снятия
+    public DescribeResult getResult(Snapshot snapshot) {
+        DataFrame table = snapshot.table;
+        for (Edit edit : snapshot.edits) apply(table, edit);
+
+        List<String> keys = table.getColumnNames();
+        List<String> rebuilt = new ArrayList<>();
+        for (String key : keys) {
+            ColumnState state = states.get(key);
+            if (state == null || state.rebuild) rebuilt.add(key);
+            else if (state.changed) refresh((NumericColumn) table.getColumn(key), state);
+        }
+        List<ColumnState> builtStates = describer.mapColumns(rebuilt, key -> buildState(table.getColumn(key)));
+        for (int i = 0; i < rebuilt.size(); i++) states.put(rebuilt.get(i), builtStates.get(i));
+
+        DescribeResult result = new DescribeResult(percents);
+        for (String key : keys) result.put(key, states.get(key).description);
+        return result;
+    }
+
+    private void apply(DataFrame table, Edit edit) {
+        ColumnState state = states.get(edit.key);
+        if (state == null || state.rebuild) return;
+        if (state.aggregate == null || !(table.getColumn(edit.key) instanceof NumericColumn)) {
+            // Нечисловой столбец или смена типа столбца - только полный пересчет
+            state.rebuild = true;
+            return;
+        }
+        double oldDouble = toDouble(edit.oldValue);
+        double newDouble = toDouble(edit.newValue);
+        PartialAggregate aggregate = state.aggregate;
+        if (!Double.isNaN(oldDouble)) {
+            if (oldDouble <= aggregate.getMin() || oldDouble >= aggregate.getMax()) state.minMaxStale = true;
+            aggregate.remove(oldDouble);
+            state.sketchDeletions++;
+        }
+        if (!Double.isNaN(newDouble)) aggregate.add(newDouble);
+        state.changed = true;
+    }
+
+    private ColumnState buildState(Column column) {
+        ColumnState state = new ColumnState();
+        if (column instanceof NumericColumn) {
+            NumericColumn numericColumn = (NumericColumn) column;
+            state.approximate = describer.isApproximate(numericColumn);
+            state.aggregate = describer.aggregate(numericColumn, state.approximate ? describer.getEpsilon() : Double.NaN);
+            state.description = describer.describe(numericColumn, state.aggregate, state.approximate, percents);
+        } else {
+            state.description = describer.describeNonNumeric(column, percents);
+        }
+        return state;
+    }
+
+    private void refresh(NumericColumn column, ColumnState state) {
+        PartialAggregate aggregate = state.aggregate;
+        if (state.minMaxStale) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < column.size(); i++) {
+                if (!column.isValid(i)) continue;
+                double value = column.getDouble(i);
+                if (value < min) min = value;
+                if (value > max) max = value;
+            }
+            aggregate.setMinMax(min, max);
+            state.minMaxStale = false;
+        }
+        if (state.approximate && state.sketchDeletions > describer.getEpsilon() * aggregate.getCount()) {
+            aggregate.setSketch(QuantileSketch.of(column, describer.getEpsilon()));
+            state.sketchDeletions = 0;
+        }
+        state.description = describer.describe(column, aggregate, state.approximate, percents);
+        state.changed = false;
+    }
+
+    private static double toDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+    }
+
+    // Неизменяемый снимок таблицы и правки, которые еще не учтены в агрегатах
+    public class Snapshot {
+        private final DataFrame table;
+        private final List<Edit> edits;
+
+        private Snapshot(DataFrame table, List<Edit> edits) {
+            this.table = table;
+            this.edits = edits;
+        }
+
+        public DescribeResult describe() {
+            return getResult(this);
+        }
+    }
+
+    private static class Edit {
+        private final String key;
+        private final Object oldValue;
+        private final Object newValue;
+
+        Edit(String key, Object oldValue, Object newValue) {
+            this.key = key;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+    }
+
+    private static class ColumnState {
+        private PartialAggregate aggregate;
+        private ColumnDescription description;
+        private boolean approximate;
+        private boolean changed;
+        private boolean minMaxStale;
+        private boolean rebuild;
+        private int sketchDeletions;
+    }
+}
@@ -0,0 +1,10 @@
+package data.strategy;
+
+// Способ расчета квантиля, когда его позиция h = (n - 1) * p попадает между двумя элементами
+public enum Interpolation {
+    LINEAR,
+    LOWER,
+    HIGHER,
+    NEAREST,
+    MIDPOINT
+}
@@ -0,0 +1,133 @@
+package data.strategy;
+
+import data.column.NumericColumn;
+
+// Частичные агрегаты по диапазону строк столбца. Агрегаты соседних диапазонов объединяются
+// формулой Чана, поэтому столбец можно считать по кускам параллельно.
+// В приближенном режиме в том же проходе заполняется скетч квантилей
+public class PartialAggregate {
+    private int count;
+    private double sum;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private QuantileSketch sketch;
+
+    public PartialAggregate() {
+    }
+
+    public PartialAggregate(QuantileSketch sketch) {
+        this.sketch = sketch;
+    }
+
+    public static PartialAggregate of(NumericColumn column, int from, int to) {
+        return of(column, from, to, Double.NaN);
+    }
+
+    // sketchEpsilon = NaN - без скетча квантилей
+    public static PartialAggregate of(NumericColumn column, int from, int to, double sketchEpsilon) {
+        PartialAggregate aggregate = Double.isNaN(sketchEpsilon)
+                ? new PartialAggregate() : new PartialAggregate(new QuantileSketch(sketchEpsilon));
+        for (int i = from; i < to; i++) {
+            if (column.isValid(i)) aggregate.add(column.getDouble(i));
+        }
+        return aggregate;
+    }
+
+    public void add(double value) {
+        count++;
+        sum += value;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (value < min) min = value;
+        if (value > max) max = value;
+        if (sketch != null) sketch.update(value);
+    }
+
+    // Обратный шаг Уэлфорда для правки ячейки; min/max при удалении не пересчитываются,
+    // за их актуальность отвечает вызывающий код (см. IncrementalStatistics)
+    public void remove(double value) {
+        if (count <= 1) {
+            count = 0;
+            sum = 0.0;
+            mean = 0.0;
+            m2 = 0.0;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+            return;
+        }
+        count--;
+        sum -= value;
+        double previousMean = mean;
+        mean -= (value - previousMean) / count;
+        m2 -= (value - previousMean) * (value - mean);
+        if (m2 < 0) m2 = 0.0;
+    }
+
+    public void setMinMax(double min, double max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    public void setSketch(QuantileSketch sketch) {
+        this.sketch = sketch;
+    }
+
+    public PartialAggregate merge(PartialAggregate other) {
+        if (sketch != null && other.sketch != null) sketch.merge(other.sketch);
+        else if (sketch == null) sketch = other.sketch;
+        if (other.count == 0) return this;
+        if (count == 0) {
+            count = other.count;
+            sum = other.sum;
+            mean = other.mean;
+            m2 = other.m2;
+            min = other.min;
+            max = other.max;
+            return this;
+        }
+        int mergedCount = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / mergedCount;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / mergedCount);
+        count = mergedCount;
+        sum += other.sum;
+        if (other.min < min) min = other.min;
+        if (other.max > max) max = other.max;
+        return this;
+    }
+
+    public QuantileSketch getSketch() {
+        return sketch;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    public double getM2() {
+        return m2;
+    }
+
+    public double getVariance() {
+        return count > 1 ? m2 / (count - 1) : Double.NaN;
+    }
+
+    public double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+}
@@ -0,0 +1,156 @@
+package data.strategy;
+
+import data.DataFrame;
+import data.column.Column;
+import data.column.NumericColumn;
+
+import java.util.Arrays;
+
+// Точные квантили выбором (introselect) вместо полной сортировки: O(n) в среднем.
+// Несколько квантилей берутся из одного буфера - каждый следующий выбор идет только по
+// правой части, уже разбитой предыдущим выбором
+public class QuantileSelector {
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private QuantileSelector() {
+    }
+
+    // Копирует в новый буфер числовые значения столбца, пропуская пустые ячейки, NaN и строки
+    public static double[] collectValues(Column column) {
+        if (column instanceof NumericColumn) {
+            NumericColumn numericColumn = (NumericColumn) column;
+            double[] buffer = new double[numericColumn.validCount()];
+            int length = 0;
+            for (int i = 0; i < numericColumn.size(); i++) {
+                if (numericColumn.isValid(i)) buffer[length++] = numericColumn.getDouble(i);
+            }
+            return buffer;
+        }
+        double[] buffer = new double[column.size()];
+        int length = 0;
+        for (int i = 0; i < column.size(); i++) {
+            Object value = column.get(i);
+            if (value instanceof Number && !Double.isNaN(((Number) value).doubleValue())) {
+                buffer[length++] = ((Number) value).doubleValue();
+            }
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    public static double[] quantiles(DataFrame df, String key, Interpolation interpolation, double... percents) {
+        double[] buffer = collectValues(df.getColumn(key));
+        return quantiles(buffer, buffer.length, interpolation, percents);
+    }
+
+    // Буфер переупорядочивается на месте; percents могут идти в любом порядке
+    public static double[] quantiles(double[] buffer, int length, Interpolation interpolation, double... percents) {
+        double[] result = new double[percents.length];
+        if (length == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        Integer[] order = new Integer[percents.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(percents[a], percents[b]));
+
+        // Все элементы правее последнего выбранного ранга не меньше его значения
+        int lastSelected = -1;
+        for (int index : order) {
+            double position = (length - 1) * percents[index];
+            for (int rank : ranksFor(interpolation, position, length)) {
+                if (rank > lastSelected) {
+                    select(buffer, lastSelected + 1, length - 1, rank);
+                    lastSelected = rank;
+                }
+            }
+            result[index] = interpolate(interpolation, position, buffer, length);
+        }
+        return result;
+    }
+
+    private static int[] ranksFor(Interpolation interpolation, double position, int length) {
+        int lower = (int) Math.floor(position);
+        switch (interpolation) {
+            case LOWER:
+                return new int[]{lower};
+            case HIGHER:
+                return new int[]{(int) Math.ceil(position)};
+            case NEAREST:
+                return new int[]{(int) Math.rint(position)};
+            default:
+                return new int[]{lower, Math.min(lower + 1, length - 1)};
+        }
+    }
+
+    private static double interpolate(Interpolation interpolation, double position, double[] buffer, int length) {
+        int lower = (int) Math.floor(position);
+        double lowerValue = buffer[lower];
+        double upperValue = buffer[Math.min(lower + 1, length - 1)];
+        double fraction = position - lower;
+        switch (interpolation) {
+            case LOWER:
+                return lowerValue;
+            case HIGHER:
+                return buffer[(int) Math.ceil(position)];
+            case NEAREST:
+                return buffer[(int) Math.rint(position)];
+            case MIDPOINT:
+                return fraction == 0 ? lowerValue : (lowerValue + upperValue) / 2;
+            default:
+                return fraction == 0 ? lowerValue : lowerValue + fraction * (upperValue - lowerValue);
+        }
+    }
+
+    // Ставит на позицию k элемент, который был бы там после сортировки [left, right];
+    // левее k - не большие, правее - не меньшие. При вырождении разбиения - досортировка
+    static void select(double[] a, int left, int right, int k) {
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(right - left + 1));
+        while (right > left) {
+            if (right - left < INSERTION_SORT_THRESHOLD) {
+                insertionSort(a, left, right);
+                return;
+            }
+            if (depthLimit-- == 0) {
+                Arrays.sort(a, left, right + 1);
+                return;
+            }
+            int middle = (left + right) >>> 1;
+            if (a[middle] < a[left]) swap(a, left, middle);
+            if (a[right] < a[left]) swap(a, left, right);
+            if (a[right] < a[middle]) swap(a, middle, right);
+            double pivot = a[middle];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (a[i] < pivot) i++;
+                while (a[j] > pivot) j--;
+                if (i <= j) {
+                    swap(a, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) right = j;
+            else if (k >= i) left = i;
+            else return;
+        }
+    }
+
+    private static void insertionSort(double[] a, int left, int right) {
+        for (int i = left + 1; i <= right; i++) {
+            double value = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > value) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = value;
+        }
+    }
+
+    private static void swap(double[] a, int i, int j) {
+        double tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+    }
+}
@@ -0,0 +1,212 @@
+package data.strategy;
+
+import data.column.Column;
+import data.column.NumericColumn;
+
+import java.util.Arrays;
+
+// Потоковый приближенный расчет квантилей (KLL-скетч). Память - O(k log(n / k)) вне зависимости
+// от длины столбца, ошибка ранга не больше epsilon * n на квантилях 1-99% (запас примерно вдвое).
+// Скетчи кусков столбца объединяются через merge. Уровень h хранит элементы с весом 2^h;
+// переполненный уровень сортируется, и каждый второй его элемент переносится на уровень выше.
+// Сдвиг (четные или нечетные) выбирает генератор с постоянным зерном: при строгом чередовании
+// ошибки уплотнений складываются и на больших столбцах ошибка почти вдвое выше epsilon, а так
+// одинаковые входные данные по-прежнему дают одинаковый скетч
+public class QuantileSketch {
+    public static final double DEFAULT_EPSILON = 0.01;
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_K = 8;
+    // k = K_FACTOR / epsilon
+    private static final double K_FACTOR = 2.5;
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private final double epsilon;
+    private final int k;
+    private double[][] levels;
+    private int[] levelSizes;
+    private int totalSize;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private long random = SEED;
+
+    public QuantileSketch() {
+        this(DEFAULT_EPSILON);
+    }
+
+    public QuantileSketch(double epsilon) {
+        this.epsilon = epsilon;
+        this.k = Math.max(MIN_K, (int) Math.ceil(K_FACTOR / epsilon));
+        this.levels = new double[][]{new double[k]};
+        this.levelSizes = new int[1];
+    }
+
+    public static QuantileSketch of(Column column, double epsilon) {
+        QuantileSketch sketch = new QuantileSketch(epsilon);
+        if (column instanceof NumericColumn) {
+            NumericColumn numericColumn = (NumericColumn) column;
+            for (int i = 0; i < numericColumn.size(); i++) {
+                if (numericColumn.isValid(i)) sketch.update(numericColumn.getDouble(i));
+            }
+        } else {
+            for (int i = 0; i < column.size(); i++) {
+                Object value = column.get(i);
+                if (value instanceof Number) sketch.update(((Number) value).doubleValue());
+            }
+        }
+        return sketch;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    // Количество хранимых элементов (ограничено примерно 3k)
+    public int getRetainedSize() {
+        return totalSize;
+    }
+
+    public void update(double value) {
+        if (Double.isNaN(value)) return;
+        count++;
+        if (value < min) min = value;
+        if (value > max) max = value;
+        append(0, value);
+        if (totalSize > totalCapacity()) compress();
+    }
+
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.k != k) throw new IllegalArgumentException("Нельзя объединить скетчи с разной точностью");
+        if (other.count == 0) return this;
+        while (levels.length < other.levels.length) addLevel();
+        for (int level = 0; level < other.levels.length; level++) {
+            for (int i = 0; i < other.levelSizes[level]; i++) append(level, other.levels[level][i]);
+        }
+        count += other.count;
+        if (other.min < min) min = other.min;
+        if (other.max > max) max = other.max;
+        compress();
+        return this;
+    }
+
+    public double quantile(double percent) {
+        return quantiles(percent)[0];
+    }
+
+    public double[] quantiles(double... percents) {
+        double[] result = new double[percents.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        // Элементы всех уровней, отсортированные по значению, с накопленным весом
+        double[] values = new double[totalSize];
+        long[] weights = new long[totalSize];
+        int size = 0;
+        for (int level = 0; level < levels.length; level++) {
+            double[] sortedLevel = Arrays.copyOf(levels[level], levelSizes[level]);
+            Arrays.sort(sortedLevel);
+            size = mergeSorted(values, weights, size, sortedLevel, 1L << level);
+        }
+        for (int i = 1; i < size; i++) weights[i] += weights[i - 1];
+
+        for (int i = 0; i < percents.length; i++) {
+            if (percents[i] <= 0) {
+                result[i] = min;
+            } else if (percents[i] >= 1) {
+                result[i] = max;
+            } else {
+                double targetWeight = percents[i] * count;
+                int index = 0;
+                while (index < size - 1 && weights[index] < targetWeight) index++;
+                result[i] = values[index];
+            }
+        }
+        return result;
+    }
+
+    private static int mergeSorted(double[] values, long[] weights, int size, double[] sortedLevel, long weight) {
+        int i = size - 1;
+        int j = sortedLevel.length - 1;
+        int position = size + sortedLevel.length - 1;
+        while (j >= 0) {
+            if (i >= 0 && values[i] > sortedLevel[j]) {
+                values[position] = values[i];
+                weights[position] = weights[i];
+                i--;
+            } else {
+                values[position] = sortedLevel[j];
+                weights[position] = weight;
+                j--;
+            }
+            position--;
+        }
+        return size + sortedLevel.length;
+    }
+
+    private int capacity(int level) {
+        int depth = levels.length - 1 - level;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private int totalCapacity() {
+        int total = 0;
+        for (int level = 0; level < levels.length; level++) total += capacity(level);
+        return total;
+    }
+
+    private void compress() {
+        while (totalSize > totalCapacity()) {
+            int level = 0;
+            while (levelSizes[level] < capacity(level)) level++;
+            compact(level);
+        }
+    }
+
+    // Половина элементов уровня поднимается на уровень выше с удвоенным весом
+    private void compact(int level) {
+        if (level == levels.length - 1) addLevel();
+        double[] items = levels[level];
+        int size = levelSizes[level];
+        Arrays.sort(items, 0, size);
+        int start = size % 2;
+        int offset = nextBit();
+        for (int i = start + offset; i < size; i += 2) append(level + 1, items[i]);
+        totalSize -= size - start;
+        levelSizes[level] = start;
+    }
+
+    // xorshift64
+    private int nextBit() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) (random >>> 63);
+    }
+
+    private void addLevel() {
+        levels = Arrays.copyOf(levels, levels.length + 1);
+        levelSizes = Arrays.copyOf(levelSizes, levelSizes.length + 1);
+        levels[levels.length - 1] = new double[2];
+    }
+
+    private void append(int level, double value) {
+        if (levelSizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(2, levels[level].length * 2));
+        }
+        levels[level][levelSizes[level]++] = value;
+        totalSize++;
+    }
+}
@@ -0,0 +1,109 @@
+package data.strategy;
+
+import data.column.NumericColumn;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantileSketchTest {
+    private static final int SIZE = 4_000_000;
+    private static final double EPSILON = QuantileSketch.DEFAULT_EPSILON;
+
+    @org.junit.jupiter.api.Test
+    void testRankErrorGaussian() {
+        Random random = new Random(1);
+        assertRankErrorWithinEpsilon(random::nextGaussian);
+    }
+
+    @org.junit.jupiter.api.Test
+    void testRankErrorLogNormal() {
+        Random random = new Random(2);
+        assertRankErrorWithinEpsilon(() -> Math.exp(random.nextGaussian()));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testRankErrorUniform() {
+        Random random = new Random(3);
+        assertRankErrorWithinEpsilon(random::nextDouble);
+    }
+
+    @org.junit.jupiter.api.Test
+    void testRankErrorMergedChunks() {
+        Random random = new Random(4);
+        double[] values = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) values[i] = random.nextGaussian();
+        QuantileSketch merged = new QuantileSketch(EPSILON);
+        int chunk = SIZE / 16;
+        for (int from = 0; from < SIZE; from += chunk) {
+            QuantileSketch part = new QuantileSketch(EPSILON);
+            for (int i = from; i < from + chunk; i++) part.update(values[i]);
+            merged.merge(part);
+        }
+        assertEquals(SIZE, merged.getCount());
+        assertTrue(maxRankError(merged, values) <= EPSILON);
+    }
+
+    @org.junit.jupiter.api.Test
+    void testSameInputGivesSameSketch() {
+        NumericColumn column = new NumericColumn(100_000);
+        Random random = new Random(5);
+        for (int i = 0; i < column.size(); i++) column.setDouble(i, random.nextGaussian());
+        double[] percents = {0.01, 0.25, 0.5, 0.75, 0.99};
+        assertArrayEquals(QuantileSketch.of(column, EPSILON).quantiles(percents),
+                QuantileSketch.of(column, EPSILON).quantiles(percents));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testEmptyAndExtremes() {
+        QuantileSketch sketch = new QuantileSketch();
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        for (int i = 1; i <= 1000; i++) sketch.update(i);
+        sketch.update(Double.NaN);
+        assertEquals(1000, sketch.getCount());
+        assertEquals(1.0, sketch.quantile(0));
+        assertEquals(1000.0, sketch.quantile(1));
+    }
+
+    // Одиночный поток через QuantileSketch.of, как в ConcreteStrategyApproxPercentile
+    private static void assertRankErrorWithinEpsilon(DoubleSupplier generator) {
+        NumericColumn column = new NumericColumn(SIZE);
+        double[] values = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            values[i] = generator.getAsDouble();
+            column.setDouble(i, values[i]);
+        }
+        double error = maxRankError(QuantileSketch.of(column, EPSILON), values);
+        assertTrue(error <= EPSILON, "Ошибка ранга " + error + " больше " + EPSILON);
+    }
+
+    // Наибольшее по квантилям 1-99% расстояние от целевого ранга до рангов ответа, в долях n
+    private static double maxRankError(QuantileSketch sketch, double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double worst = 0;
+        for (int percent = 1; percent <= 99; percent++) {
+            double value = sketch.quantile(percent / 100.0);
+            double target = percent / 100.0 * sorted.length;
+            int lower = rank(sorted, value, false);
+            int upper = rank(sorted, value, true);
+            double error = target < lower ? lower - target : target > upper ? target - upper : 0;
+            worst = Math.max(worst, error / sorted.length);
+        }
+        return worst;
+    }
+
+    // Число элементов меньше value (или не больше при inclusive)
+    private static int rank(double[] sorted, double value, boolean inclusive) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < value || inclusive && sorted[middle] == value) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+}
@@ -2,9 +2,21 @@ package data.strategy;
 
 import data.DataFrame;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
 public class StatCalculationContext {
     // Класс контекста использующий интерфейс стратегии
     private Strategy strategy;
+    // Пул для параллельного режима; null - расчет в вызывающем потоке
+    private ForkJoinPool pool;
+    private int approximateThreshold = Integer.MAX_VALUE;
+    private double epsilon = QuantileSketch.DEFAULT_EPSILON;
+    // Кэш результатов по версиям столбцов; null - всегда считать заново
+    private StrategyCache cache = StrategyCache.getInstance();
 
     // Constructor
     public StatCalculationContext() {
@@ -15,7 +27,70 @@ public class StatCalculationContext {
         this.strategy = strategy;
     }
 
+    public void setParallel(boolean parallel) {
+        this.pool = parallel ? ForkJoinPool.commonPool() : null;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Приближенный режим таблицы статистики для столбцов длиннее rowThreshold
+    public void setApproximate(int rowThreshold, double epsilon) {
+        this.approximateThreshold = rowThreshold;
+        this.epsilon = epsilon;
+    }
+
+    public void setCache(StrategyCache cache) {
+        this.cache = cache;
+    }
+
+    public StrategyCache getCache() {
+        return cache;
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
     public Number executeStrategy(DataFrame df, String key, Object... others) {
-        return strategy.execute(df, key, others);
+        return execute(strategy, df, key, others);
+    }
+
+    private Number execute(Strategy strategy, DataFrame df, String key, Object... others) {
+        if (cache == null) return strategy.execute(df, key, others);
+        return cache.execute(strategy, df, key, others);
+    }
+
+    // Расчет стратегии по нескольким столбцам; в параллельном режиме столбцы обрабатываются
+    // одновременно, результаты возвращаются в порядке ключей
+    public LinkedHashMap<String, Number> executeStrategy(DataFrame df, List<String> keys, Object... others) {
+        LinkedHashMap<String, Number> results = new LinkedHashMap<>();
+        if (pool == null) {
+            for (String key : keys) results.put(key, executeStrategy(df, key, others));
+            return results;
+        }
+        Strategy currentStrategy = strategy;
+        List<ForkJoinTask<Number>> tasks = new ArrayList<>();
+        for (String key : keys) {
+            tasks.add(pool.submit(() -> execute(currentStrategy, df, key, others)));
+        }
+        for (int i = 0; i < keys.size(); i++) results.put(keys.get(i), tasks.get(i).join());
+        return results;
+    }
+
+    public DescribeResult describe(DataFrame df, double... percents) {
+        return createDescriber().describeAll(df, percents);
+    }
+
+    // Расчет статистики с сохранением агрегатов, которые обновляются при правке ячеек
+    public IncrementalStatistics describeIncrementally(DataFrame df, double... percents) {
+        return new IncrementalStatistics(df, createDescriber(), percents);
+    }
+
+    public StatDescriber createDescriber() {
+        StatDescriber describer = new StatDescriber(pool);
+        describer.setApproximate(approximateThreshold, epsilon);
+        return describer;
     }
 }
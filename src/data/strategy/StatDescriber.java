@@ -0,0 +1,162 @@
+package data.strategy;
+
+import data.DataFrame;
+import data.column.Column;
+import data.column.NumericColumn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+// Совмещенный расчет статистики для таблицы: count/sum/mean/var/min/max за один проход
+// (алгоритм Уэлфорда), все запрошенные квантили - выбором по одному буферу (QuantileSelector).
+// С пулом ForkJoinPool столбцы считаются параллельно, а большие столбцы - по кускам.
+// Границы кусков и порядок слияния не зависят от числа потоков, так что результат
+// параллельного и последовательного расчета совпадает до бита.
+// В приближенном режиме квантили столбцов длиннее порога берутся из KLL-скетча,
+// который строится в том же проходе, и память на столбец ограничена размером скетча
+public class StatDescriber {
+    public static final double[] DEFAULT_PERCENTS = new double[]{0.25, 0.5, 0.75};
+    public static final int APPROXIMATE_ROW_THRESHOLD = 1 << 20;
+    static final int CHUNK_SIZE = 1 << 16;
+
+    private final ForkJoinPool pool;
+    private Interpolation interpolation = Interpolation.LINEAR;
+    private int approximateThreshold = Integer.MAX_VALUE;
+    private double epsilon = QuantileSketch.DEFAULT_EPSILON;
+
+    public StatDescriber() {
+        this(null);
+    }
+
+    public StatDescriber(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public void setInterpolation(Interpolation interpolation) {
+        this.interpolation = interpolation;
+    }
+
+    // Квантили столбцов, где значений больше rowThreshold, считаются приближенно с ошибкой epsilon
+    public void setApproximate(int rowThreshold, double epsilon) {
+        this.approximateThreshold = rowThreshold;
+        this.epsilon = epsilon;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public boolean isApproximate(NumericColumn column) {
+        return column.validCount() > approximateThreshold;
+    }
+
+    public DescribeResult describeAll(DataFrame df, double... percents) {
+        DescribeResult result = new DescribeResult(percents);
+        List<String> keys = df.getColumnNames();
+        List<ColumnDescription> descriptions = mapColumns(keys, key -> describe(df, key, percents));
+        for (int i = 0; i < keys.size(); i++) result.put(keys.get(i), descriptions.get(i));
+        return result;
+    }
+
+    // Применяет функцию к каждому столбцу; при наличии пула - параллельно, порядок результатов сохраняется
+    public <T> List<T> mapColumns(List<String> keys, Function<String, T> function) {
+        List<T> results = new ArrayList<>();
+        if (pool == null) {
+            for (String key : keys) results.add(function.apply(key));
+            return results;
+        }
+        List<ForkJoinTask<T>> tasks = new ArrayList<>();
+        for (String key : keys) {
+            tasks.add(pool.submit(() -> function.apply(key)));
+        }
+        for (ForkJoinTask<T> task : tasks) results.add(task.join());
+        return results;
+    }
+
+    public ColumnDescription describe(DataFrame df, String key, double... percents) {
+        Column column = df.getColumn(key);
+        if (!(column instanceof NumericColumn)) return describeNonNumeric(column, percents);
+        NumericColumn numericColumn = (NumericColumn) column;
+
+        boolean approximate = isApproximate(numericColumn);
+        PartialAggregate aggregate = aggregate(numericColumn, approximate ? epsilon : Double.NaN);
+        return describe(numericColumn, aggregate, approximate, percents);
+    }
+
+    // Описание по уже посчитанным агрегатам: точные квантили выбираются заново, приближенные берутся из скетча
+    public ColumnDescription describe(NumericColumn column, PartialAggregate aggregate, boolean approximate,
+                                      double... percents) {
+        int count = aggregate.getCount();
+        if (count == 0) return describeNonNumeric(column, percents);
+
+        double[] quantiles;
+        if (approximate) {
+            quantiles = aggregate.getSketch().quantiles(percents);
+        } else {
+            double[] buffer = QuantileSelector.collectValues(column);
+            quantiles = QuantileSelector.quantiles(buffer, buffer.length, interpolation, percents);
+        }
+        return new ColumnDescription(count, aggregate.getSum(), aggregate.getMean(), aggregate.getVariance(),
+                aggregate.getMin(), aggregate.getMax(), percents, quantiles, approximate);
+    }
+
+    public PartialAggregate aggregate(NumericColumn column) {
+        return aggregate(column, Double.NaN);
+    }
+
+    public PartialAggregate aggregate(NumericColumn column, double sketchEpsilon) {
+        if (pool == null || column.size() <= CHUNK_SIZE) return aggregate(column, 0, column.size(), sketchEpsilon);
+        AggregateTask task = new AggregateTask(column, 0, column.size(), sketchEpsilon);
+        if (ForkJoinTask.inForkJoinPool()) return task.invoke();
+        return pool.invoke(task);
+    }
+
+    // Последовательный обход того же дерева кусков, что и у AggregateTask
+    private static PartialAggregate aggregate(NumericColumn column, int from, int to, double sketchEpsilon) {
+        if (to - from <= CHUNK_SIZE) return PartialAggregate.of(column, from, to, sketchEpsilon);
+        int middle = splitPoint(from, to);
+        return aggregate(column, from, middle, sketchEpsilon).merge(aggregate(column, middle, to, sketchEpsilon));
+    }
+
+    private static int splitPoint(int from, int to) {
+        int chunks = (to - from + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        return from + (chunks / 2) * CHUNK_SIZE;
+    }
+
+    ColumnDescription describeNonNumeric(Column column, double[] percents) {
+        double[] quantiles = new double[percents.length];
+        Arrays.fill(quantiles, Double.NaN);
+        return new ColumnDescription(column.validCount(), Double.NaN, Double.NaN, Double.NaN,
+                Double.NaN, Double.NaN, percents, quantiles, false);
+    }
+
+    private static class AggregateTask extends RecursiveTask<PartialAggregate> {
+        private final NumericColumn column;
+        private final int from;
+        private final int to;
+        private final double sketchEpsilon;
+
+        AggregateTask(NumericColumn column, int from, int to, double sketchEpsilon) {
+            this.column = column;
+            this.from = from;
+            this.to = to;
+            this.sketchEpsilon = sketchEpsilon;
+        }
+
+        @Override
+        protected PartialAggregate compute() {
+            if (to - from <= CHUNK_SIZE) return PartialAggregate.of(column, from, to, sketchEpsilon);
+            int middle = splitPoint(from, to);
+            AggregateTask left = new AggregateTask(column, from, middle, sketchEpsilon);
+            AggregateTask right = new AggregateTask(column, middle, to, sketchEpsilon);
+            left.fork();
+            PartialAggregate rightAggregate = right.compute();
+            return left.join().merge(rightAggregate);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package data.strategy;
+
+import data.DataFrame;
+import data.column.Column;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+// Кэш результатов стратегий. Ключ - идентификатор столбца, его версия, класс стратегии и параметры:
+// изменение столбца через DataFrame.setValue/sortDataByKey меняет версию, и старые записи
+// просто перестают находиться, а затем вытесняются по LRU
+public class StrategyCache {
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final LinkedHashMap<Key, Number> entries;
+    private long hits;
+    private long misses;
+
+    public StrategyCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public StrategyCache(int maxSize) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Number> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public static StrategyCache getInstance() {
+        return StrategyCacheHolder.instance;
+    }
+
+    public Number execute(Strategy strategy, DataFrame df, String key, Object... others) {
+        Column column = df.getColumn(key);
+        if (column == null) return strategy.execute(df, key, others);
+        Key cacheKey = new Key(column.getId(), column.getVersion(), strategy.getClass(), others);
+        synchronized (this) {
+            Number cached = entries.get(cacheKey);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        // Расчет вне блокировки, чтобы параллельные столбцы не ждали друг друга
+        Number result = strategy.execute(df, key, others);
+        if (result != null) {
+            synchronized (this) {
+                entries.put(cacheKey, result);
+            }
+        }
+        return result;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    private static final class Key {
+        private final long columnId;
+        private final long version;
+        private final Class<?> strategyClass;
+        private final Object[] parameters;
+        private final int hash;
+
+        Key(long columnId, long version, Class<?> strategyClass, Object[] parameters) {
+            this.columnId = columnId;
+            this.version = version;
+            this.strategyClass = strategyClass;
+            this.parameters = parameters.clone();
+            this.hash = Objects.hash(columnId, version, strategyClass, Arrays.hashCode(this.parameters));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return columnId == key.columnId && version == key.version
+                    && strategyClass == key.strategyClass && Arrays.equals(parameters, key.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class StrategyCacheHolder {
+        private final static StrategyCache instance = new StrategyCache();
+    }
+}
@@ -1,8 +1,8 @@
 package data.strategy;
 
 import data.DataFrame;
+import data.DataFrameBuilder;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 
 public class StrategyExample {
@@ -10,16 +10,13 @@ public class StrategyExample {
 
     public static void main(String[] args) {
 
-        DataFrame dataFrame = new DataFrame(
-                new ArrayList<>(Arrays.asList("Name", "Age", "Height", "Weight")),
-                new ArrayList<>(Arrays.asList(
-                        new ArrayList<>(Arrays.asList("Harry", 17., 167., 67.)),
-                        new ArrayList<>(Arrays.asList("Mary", 34., 157., 54.)),
-                        new ArrayList<>(Arrays.asList("John", 64., 189., 74.)),
-                        new ArrayList<>(Arrays.asList("Jane", 41., 173., 65.)),
-                        new ArrayList<>(Arrays.asList("Incognito", 25., 184., 86.))
-                ))
-        );
+        DataFrame dataFrame = new DataFrameBuilder(Arrays.asList("Name", "Age", "Height", "Weight"))
+                .appendRow(Arrays.asList("Harry", 17., 167., 67.))
+                .appendRow(Arrays.asList("Mary", 34., 157., 54.))
+                .appendRow(Arrays.asList("John", 64., 189., 74.))
+                .appendRow(Arrays.asList("Jane", 41., 173., 65.))
+                .appendRow(Arrays.asList("Incognito", 25., 184., 86.))
+                .build();
 
         StatCalculationContext context = new StatCalculationContext();
 
@@ -0,0 +1,345 @@
+package tools;
+
+import data.DataFrame;
+import data.column.Column;
+import data.column.MappedNumericColumn;
+import data.column.NumericColumn;
+import data.column.ObjectColumn;
+import data.column.StringColumn;
+import data.column.ValidityBitmap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// Двоичный кэш загруженной таблицы рядом с исходным файлом (<файл>.dfcache), чтобы повторное
+// открытие не разбирало CSV/Excel заново. Числовые столбцы при открытии не копируются в кучу,
+// а отображаются из файла (MappedNumericColumn). Кэш действителен, пока совпадают размер и время
+// изменения исходного файла. Формат (little-endian, секции столбцов выровнены на 8 байт):
+//   заголовок: MAGIC, VERSION, размер и mtime источника, число строк и столбцов, длина таблицы столбцов,
+//   затем по столбцу: заголовок (строка или число), тип, смещение и длина секции;
+//   NUMERIC: маска заполненности (long[]) + double[строки];
+//   STRING:  маска + словарь (int n, n раз int длина + UTF-8) + int[строки] кодов;
+//   MIXED:   маска + double[строки] (NaN у строк) + словарь + int[строки] кодов (-1 у чисел)
+class ColumnarCache {
+    static final String SUFFIX = ".dfcache";
+    private static final long MAGIC = 0x31454843_41434644L; // "DFCACHE1"
+    private static final int VERSION = 1;
+    private static final int FIXED_HEADER_LENGTH = 44;
+    private static final byte NUMERIC = 0;
+    private static final byte STRING = 1;
+    private static final byte MIXED = 2;
+    private static final byte HEADER_STRING = 0;
+    private static final byte HEADER_NUMBER = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    static Path cacheFileOf(Path source) {
+        return source.resolveSibling(source.getFileName() + SUFFIX);
+    }
+
+    // Файл кэша поколения generation: 0 - обычный кэш источника, остальные - базы, в которые
+    // свернут журнал правок (<файл>.dfcache.<поколение>). Каждая свертка пишет новый файл, а не
+    // заменяет старый: заменить отображенный в память файл на Windows нельзя
+    static Path cacheFileOf(Path source, long generation) {
+        if (generation == 0) return cacheFileOf(source);
+        return source.resolveSibling(source.getFileName() + SUFFIX + "." + generation);
+    }
+
+    // Таблица из кэша или null, если кэша нет, он устарел или поврежден
+    DataFrame load(Path source) {
+        return load(source, 0);
+    }
+
+    DataFrame load(Path source, long generation) {
+        Path cacheFile = cacheFileOf(source, generation);
+        if (!Files.isRegularFile(cacheFile)) return null;
+        // Отображение только для чтения: правки столбцов копируются на кучу, файл не меняется
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            return read(channel, Files.size(source), Files.getLastModifiedTime(source).toMillis());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("ОШИБКА: Не удалось прочитать кэш таблицы " + cacheFile + ": " + e);
+            return null;
+        }
+    }
+
+    // Запись через временный файл, чтобы прерванная запись не оставила битый кэш.
+    // Возвращает false, если кэш не сохранен
+    boolean save(Path source, DataFrame dataFrame) {
+        return save(source, 0, dataFrame);
+    }
+
+    boolean save(Path source, long generation, DataFrame dataFrame) {
+        Path cacheFile = cacheFileOf(source, generation);
+        Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try {
+            long sourceSize = Files.size(source);
+            long sourceModified = Files.getLastModifiedTime(source).toMillis();
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                write(channel, dataFrame, sourceSize, sourceModified);
+            }
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("ОШИБКА: Не удалось сохранить кэш таблицы " + cacheFile + ": " + e);
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException ignored) {
+            }
+            return false;
+        }
+    }
+
+    private static DataFrame read(FileChannel channel, long sourceSize, long sourceModified) throws IOException {
+        ByteBuffer fixed = readFully(channel, 0, FIXED_HEADER_LENGTH);
+        if (fixed.getLong() != MAGIC || fixed.getInt() != VERSION) return null;
+        if (fixed.getLong() != sourceSize || fixed.getLong() != sourceModified) return null;
+        int rowCount = fixed.getInt();
+        int columnCount = fixed.getInt();
+        long headerLength = fixed.getLong();
+
+        ByteBuffer header = readFully(channel, FIXED_HEADER_LENGTH, headerLength);
+        ArrayList<Object> columnHeaders = new ArrayList<>();
+        ArrayList<Column> columns = new ArrayList<>();
+        for (int c = 0; c < columnCount; c++) {
+            byte headerKind = header.get();
+            columnHeaders.add(headerKind == HEADER_NUMBER ? (Object) header.getDouble() : getString(header));
+            byte type = header.get();
+            long offset = header.getLong();
+            long length = header.getLong();
+            if (type == NUMERIC) {
+                // Числовой столбец читается прямо из файла, маска не нужна: пропуски записаны как NaN
+                long valuesOffset = offset + (long) ValidityBitmap.wordCount(rowCount) * Long.BYTES;
+                columns.add(MappedNumericColumn.map(channel, valuesOffset, rowCount));
+                continue;
+            }
+            MappedByteBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            section.order(ByteOrder.LITTLE_ENDIAN);
+            columns.add(readColumn(section, type, rowCount));
+        }
+        return new DataFrame(columnHeaders, columns);
+    }
+
+    private static Column readColumn(ByteBuffer section, byte type, int rowCount) {
+        long[] words = new long[ValidityBitmap.wordCount(rowCount)];
+        section.asLongBuffer().get(words);
+        section.position(words.length * Long.BYTES);
+        ValidityBitmap validity = ValidityBitmap.fromWords(words, rowCount);
+        double[] values = null;
+        if (type == NUMERIC || type == MIXED) {
+            values = new double[rowCount];
+            section.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values);
+            section.position(section.position() + rowCount * Double.BYTES);
+        }
+        if (type == NUMERIC) return new NumericColumn(values, validity, rowCount);
+
+        int dictionarySize = section.getInt();
+        ArrayList<String> dictionary = new ArrayList<>(dictionarySize);
+        for (int i = 0; i < dictionarySize; i++) dictionary.add(getString(section));
+        section.position(align(section.position(), Integer.BYTES));
+        int[] codes = new int[rowCount];
+        section.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(codes);
+        if (type == STRING) return new StringColumn(codes, validity, rowCount, dictionary);
+
+        ObjectColumn column = new ObjectColumn(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            if (!validity.get(i)) continue;
+            column.set(i, codes[i] >= 0 ? dictionary.get(codes[i]) : (Object) values[i]);
+        }
+        return column;
+    }
+
+    private static void write(FileChannel channel, DataFrame dataFrame, long sourceSize, long sourceModified) throws IOException {
+        ArrayList<Object> columnHeaders = dataFrame.getColumnHeaders();
+        int rowCount = dataFrame.getRowCount();
+        ArrayList<Section> sections = new ArrayList<>();
+        ArrayList<byte[]> names = new ArrayList<>();
+        int headerLength = 0;
+        for (Object columnHeader : columnHeaders) {
+            sections.add(new Section(dataFrame.getColumn(columnHeader.toString()), rowCount));
+            byte[] name = columnHeader instanceof Number ? null : columnHeader.toString().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            headerLength += 1 + (name == null ? Double.BYTES : Integer.BYTES + name.length) + 1 + 2 * Long.BYTES;
+        }
+
+        // Длины секций известны заранее, поэтому смещения пишутся в заголовок сразу
+        ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_LENGTH + headerLength).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC).putInt(VERSION).putLong(sourceSize).putLong(sourceModified)
+                .putInt(rowCount).putInt(columnHeaders.size()).putLong(headerLength);
+        long offset = align(FIXED_HEADER_LENGTH + headerLength, Long.BYTES);
+        for (int c = 0; c < sections.size(); c++) {
+            byte[] name = names.get(c);
+            if (name == null) header.put(HEADER_NUMBER).putDouble(((Number) columnHeaders.get(c)).doubleValue());
+            else header.put(HEADER_STRING).putInt(name.length).put(name);
+            Section section = sections.get(c);
+            header.put(section.type).putLong(offset).putLong(section.length);
+            offset = align(offset + section.length, Long.BYTES);
+        }
+        header.flip();
+        writeFully(channel, header);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (Section section : sections) {
+            channel.position(align(channel.position(), Long.BYTES));
+            section.write(channel, buffer);
+        }
+    }
+
+    // Подготовка столбца к записи: маска, словарь в UTF-8 и длина секции
+    private static class Section {
+        private final Column column;
+        private final int rowCount;
+        private final byte type;
+        private final List<byte[]> dictionary = new ArrayList<>();
+        private final long length;
+        private int[] codes;
+
+        Section(Column column, int rowCount) {
+            this.column = column;
+            this.rowCount = rowCount;
+            this.type = column instanceof NumericColumn ? NUMERIC : column instanceof StringColumn ? STRING : MIXED;
+            long sectionLength = (long) ValidityBitmap.wordCount(rowCount) * Long.BYTES;
+            if (type != NUMERIC) {
+                if (type == STRING) {
+                    for (String value : ((StringColumn) column).getDictionary()) dictionary.add(value.getBytes(StandardCharsets.UTF_8));
+                } else {
+                    encodeMixed();
+                }
+                sectionLength += Integer.BYTES;
+                for (byte[] value : dictionary) sectionLength += Integer.BYTES + value.length;
+                sectionLength = align(sectionLength, Integer.BYTES) + (long) rowCount * Integer.BYTES;
+            }
+            if (type != STRING) sectionLength += (long) rowCount * Double.BYTES;
+            this.length = sectionLength;
+        }
+
+        private void encodeMixed() {
+            codes = new int[rowCount];
+            HashMap<String, Integer> index = new HashMap<>();
+            for (int i = 0; i < rowCount; i++) {
+                Object value = i < column.size() && column.isValid(i) ? column.get(i) : null;
+                if (value instanceof String) {
+                    Integer code = index.get(value);
+                    if (code == null) {
+                        code = dictionary.size();
+                        index.put((String) value, code);
+                        dictionary.add(((String) value).getBytes(StandardCharsets.UTF_8));
+                    }
+                    codes[i] = code;
+                } else {
+                    codes[i] = -1;
+                }
+            }
+        }
+
+        void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+            long start = channel.position();
+            buffer.clear();
+            // Маска считается по ходу записи, чтобы не держать ее целиком для больших столбцов
+            for (int from = 0; from < rowCount; from += Long.SIZE) {
+                long word = 0;
+                for (int i = from; i < Math.min(rowCount, from + Long.SIZE); i++) {
+                    if (i < column.size() && column.isValid(i)) word |= 1L << i;
+                }
+                buffer = putLong(channel, buffer, word);
+            }
+            if (type != STRING) {
+                for (int i = 0; i < rowCount; i++) buffer = putDouble(channel, buffer, doubleAt(i));
+            }
+            if (type != NUMERIC) {
+                buffer = ensureWritable(channel, buffer, Integer.BYTES);
+                buffer.putInt(dictionary.size());
+                for (byte[] value : dictionary) {
+                    buffer = ensureWritable(channel, buffer, Integer.BYTES);
+                    buffer.putInt(value.length);
+                    for (int offset = 0; offset < value.length; ) {
+                        buffer = ensureWritable(channel, buffer, 1);
+                        int chunk = Math.min(buffer.remaining(), value.length - offset);
+                        buffer.put(value, offset, chunk);
+                        offset += chunk;
+                    }
+                }
+                long written = channel.position() - start + buffer.position();
+                for (long i = written; i < align(written, Integer.BYTES); i++) {
+                    buffer = ensureWritable(channel, buffer, 1);
+                    buffer.put((byte) 0);
+                }
+                for (int i = 0; i < rowCount; i++) {
+                    buffer = ensureWritable(channel, buffer, Integer.BYTES);
+                    buffer.putInt(codeAt(i));
+                }
+            }
+            buffer.flip();
+            writeFully(channel, buffer);
+        }
+
+        private double doubleAt(int row) {
+            if (row >= column.size() || !column.isValid(row)) return Double.NaN;
+            if (column instanceof NumericColumn) return ((NumericColumn) column).getDouble(row);
+            Object value = column.get(row);
+            return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+        }
+
+        private int codeAt(int row) {
+            if (codes != null) return codes[row];
+            return row < column.size() && column.isValid(row) ? ((StringColumn) column).getCode(row) : 0;
+        }
+    }
+
+    private static ByteBuffer putLong(FileChannel channel, ByteBuffer buffer, long value) throws IOException {
+        buffer = ensureWritable(channel, buffer, Long.BYTES);
+        return buffer.putLong(value);
+    }
+
+    private static ByteBuffer putDouble(FileChannel channel, ByteBuffer buffer, double value) throws IOException {
+        buffer = ensureWritable(channel, buffer, Double.BYTES);
+        return buffer.putDouble(value);
+    }
+
+    // Сбрасывает буфер в канал, если в нем не осталось места под очередное значение
+    private static ByteBuffer ensureWritable(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return buffer;
+        buffer.flip();
+        writeFully(channel, buffer);
+        buffer.clear();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, long length) throws IOException {
+        if (length > Integer.MAX_VALUE || position + length > channel.size()) throw new IOException("Поврежденный файл кэша");
+        ByteBuffer buffer = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Поврежденный файл кэша");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long align(long position, int alignment) {
+        return (position + alignment - 1) / alignment * alignment;
+    }
+
+    private static int align(int position, int alignment) {
+        return (position + alignment - 1) / alignment * alignment;
+    }
+}
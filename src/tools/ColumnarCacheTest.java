@@ -0,0 +1,121 @@
+package tools;
+
+import data.DataFrame;
+import data.column.Column;
+import data.column.MappedNumericColumn;
+import data.column.NumericColumn;
+import data.column.ObjectColumn;
+import data.column.StringColumn;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarCacheTest {
+    @org.junit.jupiter.api.io.TempDir
+    Path folder;
+
+    @org.junit.jupiter.api.Test
+    void testRoundTrip() throws IOException {
+        Path source = source("a;b\n");
+        DataFrame dataFrame = sample();
+        ColumnarCache cache = new ColumnarCache();
+        assertTrue(cache.save(source, dataFrame));
+        DataFrame loaded = cache.load(source);
+        assertNotNull(loaded);
+        assertEquals(dataFrame.getColumnHeaders(), loaded.getColumnHeaders());
+        assertEquals(dataFrame.getRowCount(), loaded.getRowCount());
+        // Числовой столбец отображается из файла, остальные читаются в кучу
+        assertTrue(loaded.getColumn("x") instanceof MappedNumericColumn);
+        assertTrue(loaded.getColumn("name") instanceof StringColumn);
+        assertTrue(loaded.getColumn("2.5") instanceof ObjectColumn);
+        assertTrue(loaded.getColumn("7.0") instanceof NumericColumn);
+        for (Object header : dataFrame.getColumnHeaders()) {
+            Column expected = dataFrame.getColumn(header.toString());
+            Column actual = loaded.getColumn(header.toString());
+            for (int row = 0; row < dataFrame.getRowCount(); row++) {
+                assertEquals(expected.isValid(row), actual.isValid(row), header + ", строка " + row);
+                assertEquals(expected.get(row), actual.get(row), header + ", строка " + row);
+            }
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void testNumericHeadersKeepType() throws IOException {
+        Path source = source("1");
+        ColumnarCache cache = new ColumnarCache();
+        assertTrue(cache.save(source, sample()));
+        ArrayList<Object> headers = cache.load(source).getColumnHeaders();
+        assertEquals(String.class, headers.get(0).getClass());
+        assertEquals(Double.class, headers.get(2).getClass());
+        assertEquals(Double.class, headers.get(3).getClass());
+    }
+
+    @org.junit.jupiter.api.Test
+    void testEmptyTable() throws IOException {
+        Path source = source("");
+        ArrayList<Object> headers = new ArrayList<>(List.of("x", "s"));
+        DataFrame empty = new DataFrame(headers, List.of(new NumericColumn(0), new StringColumn(0)));
+        ColumnarCache cache = new ColumnarCache();
+        assertTrue(cache.save(source, empty));
+        DataFrame loaded = cache.load(source);
+        assertEquals(headers, loaded.getColumnHeaders());
+        assertEquals(0, loaded.getRowCount());
+    }
+
+    // Кэш устаревает при изменении размера или времени изменения исходного файла
+    @org.junit.jupiter.api.Test
+    void testChangedSourceInvalidatesCache() throws IOException {
+        Path source = source("a;b\n");
+        ColumnarCache cache = new ColumnarCache();
+        assertTrue(cache.save(source, sample()));
+        Files.writeString(source, "a;b;c\n");
+        assertNull(cache.load(source));
+
+        assertTrue(cache.save(source, sample()));
+        Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 5000));
+        assertNull(cache.load(source));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testDamagedCacheIsIgnored() throws IOException {
+        Path source = source("a;b\n");
+        ColumnarCache cache = new ColumnarCache();
+        assertNull(cache.load(source));
+        assertTrue(cache.save(source, sample()));
+        Path cacheFile = ColumnarCache.cacheFileOf(source);
+        byte[] bytes = Files.readAllBytes(cacheFile);
+        Files.write(cacheFile, Arrays.copyOf(bytes, bytes.length / 2));
+        assertNull(cache.load(source));
+        Files.write(cacheFile, new byte[]{1, 2, 3});
+        assertNull(cache.load(source));
+    }
+
+    private Path source(String text) throws IOException {
+        return Files.writeString(folder.resolve("table.csv"), text);
+    }
+
+    // Таблица на 150 строк (больше слова маски) с пропусками во всех столбцах и числовыми заголовками
+    private static DataFrame sample() {
+        int rows = 150;
+        NumericColumn numbers = new NumericColumn(rows);
+        StringColumn names = new StringColumn(rows);
+        ObjectColumn mixed = new ObjectColumn(rows);
+        NumericColumn constant = new NumericColumn(rows);
+        for (int i = 0; i < rows; i++) {
+            if (i % 7 != 3) numbers.setDouble(i, i * 0.5 - 20);
+            if (i % 5 != 1) names.setString(i, i % 3 == 0 ? "" : "имя " + i % 11);
+            if (i % 4 == 1) mixed.set(i, "текст " + i % 6);
+            else if (i % 4 != 2) mixed.set(i, -i / 3.0);
+            if (i > 0) constant.setDouble(i, i % 2 == 0 ? Double.NEGATIVE_INFINITY : 1e300);
+        }
+        ArrayList<Object> headers = new ArrayList<>(List.of("x", "name", 2.5, 7.0));
+        return new DataFrame(headers, List.of(numbers, names, mixed, constant));
+    }
+}
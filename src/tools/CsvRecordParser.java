@@ -0,0 +1,169 @@
+package tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Разбор строк CSV с теми же правилами, что у CSVParser из OpenCSV (разделитель ',', кавычка '"',
+// экранирование '\', пробелы перед кавычкой игнорируются), чтобы новый загрузчик давал тот же
+// результат на кавычках, экранировании и многострочных полях. Работает по диапазонам char[]
+class CsvRecordParser {
+    static final char SEPARATOR = ',';
+    static final char QUOTE = '"';
+    static final char ESCAPE = '\\';
+
+    // Символы всех полей текущей записи подряд в одном буфере, поле - диапазон [start, end),
+    // так что числовые ячейки разбираются без создания строк
+    private char[] buffer = new char[256];
+    private int length;
+    private int fieldStart;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private int fieldCount;
+    // Запись продолжается на следующей физической строке (перевод строки внутри кавычек)
+    private boolean pending;
+    // Как и в OpenCSV, флаг переживает границу строки внутри многострочного поля
+    private boolean inField;
+
+    // Разбирает одну физическую строку без символов перевода строки.
+    // Возвращает true, если запись завершена и ее поля доступны через getField*()
+    boolean parseLine(char[] line, int from, int to) {
+        boolean inQuotes = false;
+        if (pending) {
+            inQuotes = true;
+            pending = false;
+        } else {
+            length = 0;
+            fieldStart = 0;
+            fieldCount = 0;
+        }
+        for (int i = from; i < to; i++) {
+            char c = line[i];
+            boolean quoted = inQuotes || inField;
+            if (c == ESCAPE) {
+                if (quoted && i + 1 < to && (line[i + 1] == QUOTE || line[i + 1] == ESCAPE)) {
+                    append(line[++i]);
+                }
+            } else if (c == QUOTE) {
+                if (quoted && i + 1 < to && line[i + 1] == QUOTE) {
+                    append(line[++i]);
+                } else {
+                    inQuotes = !inQuotes;
+                    // Кавычка посреди поля (a"b) остается в значении, кроме случая, когда перед ней одни пробелы
+                    if (i - from > 2 && line[i - 1] != SEPARATOR && i + 1 < to && line[i + 1] != SEPARATOR) {
+                        if (length > fieldStart && isWhitespace(fieldStart, length)) length = fieldStart;
+                        else append(c);
+                    }
+                }
+                inField = !inField;
+            } else if (c == SEPARATOR && !inQuotes) {
+                endField();
+                inField = false;
+            } else {
+                append(c);
+                inField = true;
+            }
+        }
+        if (inQuotes) {
+            append('\n');
+            pending = true;
+            return false;
+        }
+        inField = false;
+        endField();
+        return true;
+    }
+
+    boolean isPending() {
+        return pending;
+    }
+
+    int getFieldCount() {
+        return fieldCount;
+    }
+
+    char[] getBuffer() {
+        return buffer;
+    }
+
+    int getFieldStart(int field) {
+        return fieldStarts[field];
+    }
+
+    int getFieldEnd(int field) {
+        return fieldEnds[field];
+    }
+
+    String getField(int field) {
+        return new String(buffer, fieldStarts[field], fieldEnds[field] - fieldStarts[field]);
+    }
+
+    ArrayList<String> getFields() {
+        ArrayList<String> fields = new ArrayList<>(fieldCount);
+        for (int i = 0; i < fieldCount; i++) fields.add(getField(i));
+        return fields;
+    }
+
+    private void append(char c) {
+        if (length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        buffer[length++] = c;
+    }
+
+    private void endField() {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = fieldStart;
+        fieldEnds[fieldCount++] = length;
+        fieldStart = length;
+    }
+
+    private boolean isWhitespace(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isWhitespace(buffer[i])) return false;
+        }
+        return true;
+    }
+
+    // Облегченный автомат для поиска границ записей по байтам: отслеживает только состояние кавычек,
+    // поэтому может идти по UTF-8 без декодирования (все управляющие символы - ASCII)
+    static class BoundaryScanner {
+        private boolean inQuotes;
+        private boolean inField;
+        private boolean pending;
+
+        // Обрабатывает физическую строку [from, to); возвращает true, если на ней закончилась запись
+        boolean scanLine(ByteSource source, long from, long to) {
+            inQuotes = pending;
+            for (long i = from; i < to; i++) {
+                byte b = source.get(i);
+                boolean quoted = inQuotes || inField;
+                if (b == ESCAPE) {
+                    if (quoted && i + 1 < to) {
+                        byte next = source.get(i + 1);
+                        if (next == QUOTE || next == ESCAPE) i++;
+                    }
+                } else if (b == QUOTE) {
+                    if (quoted && i + 1 < to && source.get(i + 1) == QUOTE) i++;
+                    else inQuotes = !inQuotes;
+                    inField = !inField;
+                } else if (b == SEPARATOR && !inQuotes) {
+                    inField = false;
+                } else {
+                    inField = true;
+                }
+            }
+            pending = inQuotes;
+            if (!pending) inField = false;
+            return !pending;
+        }
+
+        boolean isPending() {
+            return pending;
+        }
+    }
+
+    interface ByteSource {
+        byte get(long position);
+    }
+}
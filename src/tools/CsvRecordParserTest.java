@@ -0,0 +1,127 @@
+package tools;
+
+import com.opencsv.CSVReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvRecordParserTest {
+
+    @org.junit.jupiter.api.Test
+    void testPlainFields() {
+        assertEquals(List.of(List.of("a", "1.5", "", " c ")), parse("a,1.5,, c "));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testQuotedFields() {
+        assertEquals(List.of(List.of("a,b", "say \"hi\"", "", "x")), parse("\"a,b\",\"say \"\"hi\"\"\",\"\",x"));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testEscapedQuote() {
+        assertEquals(List.of(List.of("a\"b", "c\\d")), parse("\"a\\\"b\",\"c\\\\d\""));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testEmbeddedNewlines() {
+        String text = "id,comment\n1,\"first line\nsecond line\"\n2,\"a\n\nb\",tail\n3,plain";
+        assertEquals(List.of(
+                List.of("id", "comment"),
+                List.of("1", "first line\nsecond line"),
+                List.of("2", "a\n\nb", "tail"),
+                List.of("3", "plain")), parse(text));
+        assertEquals(openCsv(text), parse(text));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testSameAsOpenCsvOnTrickyLines() {
+        String[] lines = {" \"x\" ,y", "  \"q\",z", "\"\"", "\"\"\"\"", "a,\"b\"\"\",c",
+                "ab\"c\"d,e", "\"\\a\"", ",,", "\"a,\nb\",\"c\nd\ne\""};
+        for (String line : lines) assertEquals(openCsv(line), parse(line), line);
+    }
+
+    @org.junit.jupiter.api.Test
+    void testSameAsOpenCsvOnRandomFiles() {
+        Random random = new Random(11);
+        for (int file = 0; file < 2000; file++) {
+            String text = randomCsv(random);
+            assertEquals(openCsv(text), parse(text), text);
+        }
+    }
+
+    // Граница записи по байтам должна совпадать с концом записи у полного разбора
+    @org.junit.jupiter.api.Test
+    void testBoundaryScannerAgreesWithParser() {
+        Random random = new Random(12);
+        for (int file = 0; file < 2000; file++) {
+            CsvRecordParser parser = new CsvRecordParser();
+            CsvRecordParser.BoundaryScanner scanner = new CsvRecordParser.BoundaryScanner();
+            for (String line : lines(randomCsv(random))) {
+                byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                boolean scanned = scanner.scanLine(position -> bytes[(int) position], 0, bytes.length);
+                char[] chars = line.toCharArray();
+                assertEquals(parser.parseLine(chars, 0, chars.length), scanned, line);
+                assertEquals(parser.isPending(), scanner.isPending());
+            }
+        }
+    }
+
+    private static List<List<String>> parse(String text) {
+        CsvRecordParser parser = new CsvRecordParser();
+        List<List<String>> records = new ArrayList<>();
+        for (String line : lines(text)) {
+            char[] chars = line.toCharArray();
+            if (parser.parseLine(chars, 0, chars.length)) records.add(parser.getFields());
+        }
+        return records;
+    }
+
+    // Физические строки, как их отдает BufferedReader.readLine
+    private static List<String> lines(String text) {
+        List<String> lines = new ArrayList<>(Arrays.asList(text.split("\n", -1)));
+        if (lines.get(lines.size() - 1).isEmpty()) lines.remove(lines.size() - 1);
+        return lines;
+    }
+
+    private static List<List<String>> openCsv(String text) {
+        List<List<String>> records = new ArrayList<>();
+        try (CSVReader reader = new CSVReader(new StringReader(text))) {
+            String[] record;
+            while ((record = reader.readNext()) != null) records.add(Arrays.asList(record));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return records;
+    }
+
+    // Правильно оформленный CSV: простые поля и поля в кавычках с удвоенными и экранированными
+    // кавычками, разделителями, переводами строк и пробелами перед кавычкой
+    private static String randomCsv(Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int record = random.nextInt(5); record >= 0; record--) {
+            if (text.length() > 0) text.append('\n');
+            for (int field = random.nextInt(4); field >= 0; field--) {
+                if (field > 0) text.append(',');
+                if (random.nextBoolean()) {
+                    for (int i = random.nextInt(4); i > 0; i--) text.append("ab 1.".charAt(random.nextInt(5)));
+                } else {
+                    if (random.nextInt(4) == 0) text.append(' ');
+                    text.append('"');
+                    for (int i = random.nextInt(6); i > 0; i--) {
+                        String[] parts = {"a", " ", ",", "\n", "\"\"", "\\\"", "\\\\", "1"};
+                        text.append(parts[random.nextInt(parts.length)]);
+                    }
+                    text.append('"');
+                }
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,481 @@
+package tools;
+
+import data.DataFrame;
+
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.CRC32C;
+
+// Журнал принятых правок на диске рядом с исходным файлом (<файл>.dfedits), чтобы правки
+// переживали падение программы без полной записи таблицы. Файл только дописывается: записи
+// SET (столбец, строка, значение) копятся в буфере и уходят в канал пачкой при COMMIT;
+// fsync выполняется не чаще раза в FORCE_INTERVAL_MS: принятое раньше догоняет таймер, а
+// остаток - закрытие журнала (в том числе при выходе). COMMIT хранит CRC32C записей транзакции,
+// так что оборванный или испорченный хвост при открытии отбрасывается.
+// При открытии принятые транзакции применяются к базе журнала: исходному файлу (его кэшу) или
+// кэшу, в который свернуты прежние правки. Когда журнал вырастает за COMPACT_THRESHOLD, снимок
+// таблицы в фоне сохраняется как база следующего поколения (ColumnarCache.cacheFileOf), после чего
+// журнал под блокировкой заменяется новым: заголовок на новую базу и принятое за время записи.
+// Если базу сохранить не удалось, порог удваивается, чтобы не повторять полную запись таблицы
+// на каждом принятии. Заголовок (little-endian): MAGIC, VERSION, размер и mtime источника,
+// поколение базы, размер и mtime файла базы (нули у поколения 0 - самого источника)
+public class EditLog {
+    static final String SUFFIX = ".dfedits";
+    static final long COMPACT_THRESHOLD = 64 << 20;
+    private static final long FORCE_INTERVAL_MS = 1000;
+    private static final long MAGIC = 0x31535449_44454644L; // "DFEDITS1"
+    private static final int VERSION = 2;
+    private static final int HEADER_LENGTH = 52;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte SET = 1;
+    private static final byte COMMIT = 2;
+    private static final byte NULL = 0;
+    private static final byte NUMBER = 1;
+    private static final byte TEXT = 2;
+
+    private final Path source;
+    private final Path logFile;
+    private final ColumnarCache cache;
+    private final long compactThreshold;
+    // Поколение базы, к которой относится журнал
+    private long generation;
+    // Размер журнала, после которого пробуется свертка в кэш
+    private long nextCompaction;
+    private SwingWorker<Void, Void> compaction;
+    private FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32C checksum = new CRC32C();
+    // Начало еще не учтенных в контрольной сумме байт буфера
+    private int checksummed;
+    private long lastForce;
+    // Принятые транзакции, еще не сброшенные на диск; их сбрасывает forceTimer в потоке Swing
+    private boolean unforced;
+    private final Timer forceTimer;
+
+    private EditLog(Path source, ColumnarCache cache, long generation, long compactThreshold) {
+        this.source = source;
+        this.logFile = logFileOf(source);
+        this.cache = cache;
+        this.generation = generation;
+        this.compactThreshold = compactThreshold;
+        this.nextCompaction = compactThreshold;
+        forceTimer = new Timer((int) FORCE_INTERVAL_MS, e -> forceUnforced());
+        forceTimer.setRepeats(false);
+    }
+
+    static Path logFileOf(Path source) {
+        return source.resolveSibling(source.getFileName() + SUFFIX);
+    }
+
+    // Поколение базы, к которой относится журнал источника, - из него загружается таблица до
+    // открытия журнала. 0, если журнала нет, он от другой версии источника или база изменилась
+    static long baseGeneration(Path source) {
+        Path logFile = logFileOf(source);
+        if (!Files.isRegularFile(logFile)) return 0;
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) return 0;
+            }
+            header.flip();
+            return Math.max(checkHeader(header, source), 0);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Открытие журнала таблицы, загруженной из базы поколения generation: принятые правки применяются
+    // к dataFrame, журнал от другой версии источника или базы отбрасывается. При ошибке ввода-вывода
+    // возвращает null - таблица работает без журнала
+    static EditLog open(Path source, DataFrame dataFrame, ColumnarCache cache) {
+        return open(source, dataFrame, cache, 0);
+    }
+
+    static EditLog open(Path source, DataFrame dataFrame, ColumnarCache cache, long generation) {
+        return open(source, dataFrame, cache, generation, COMPACT_THRESHOLD);
+    }
+
+    static EditLog open(Path source, DataFrame dataFrame, ColumnarCache cache, long generation, long compactThreshold) {
+        EditLog log = new EditLog(source, cache, generation, compactThreshold);
+        try {
+            log.channel = FileChannel.open(log.logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long validLength = log.replay(dataFrame);
+            if (validLength < 0) {
+                log.reset();
+            } else {
+                log.channel.truncate(validLength);
+                log.channel.position(validLength);
+            }
+            log.deleteStaleBases();
+            return log;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("ОШИБКА: Не удалось открыть журнал правок " + log.logFile + ": " + e);
+            log.close();
+            return null;
+        }
+    }
+
+    public synchronized void set(int column, int row, Object value) {
+        if (channel == null) return;
+        try {
+            if (value instanceof Double) {
+                ensureWritable(1 + 2 * Integer.BYTES + 1 + Double.BYTES);
+                putCell(column, row, NUMBER);
+                buffer.putDouble((Double) value);
+            } else if (value == null) {
+                ensureWritable(1 + 2 * Integer.BYTES + 1);
+                putCell(column, row, NULL);
+            } else {
+                byte[] text = value.toString().getBytes(StandardCharsets.UTF_8);
+                ensureWritable(1 + 2 * Integer.BYTES + 1 + Integer.BYTES);
+                putCell(column, row, TEXT);
+                buffer.putInt(text.length);
+                for (int offset = 0; offset < text.length; ) {
+                    ensureWritable(1);
+                    int length = Math.min(buffer.remaining(), text.length - offset);
+                    buffer.put(text, offset, length);
+                    offset += length;
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // Конец транзакции: записи SET после предыдущего COMMIT уходят в файл. Выросший журнал
+    // сворачивается в кэш вместе с dataFrame, уже содержащим эти правки
+    public synchronized void commit(DataFrame dataFrame) {
+        if (channel == null) return;
+        try {
+            ensureWritable(1 + Integer.BYTES);
+            updateChecksum();
+            buffer.put(COMMIT).putInt((int) checksum.getValue());
+            checksummed = buffer.position();
+            checksum.reset();
+            flush();
+            long elapsed = System.currentTimeMillis() - lastForce;
+            if (elapsed >= FORCE_INTERVAL_MS) {
+                force();
+            } else {
+                unforced = true;
+                if (!forceTimer.isRunning()) {
+                    forceTimer.setInitialDelay((int) (FORCE_INTERVAL_MS - elapsed));
+                    forceTimer.start();
+                }
+            }
+            if (compaction == null && channel.size() > nextCompaction) startCompaction(dataFrame);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // Закрытие дожидается идущей свертки, чтобы ее база не осталась без журнала
+    public void close() {
+        awaitCompaction();
+        closeChannel();
+    }
+
+    private synchronized void closeChannel() {
+        forceTimer.stop();
+        if (channel == null) return;
+        try {
+            flush();
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("ОШИБКА: Не удалось закрыть журнал правок " + logFile + ": " + e);
+        }
+        channel = null;
+    }
+
+    private synchronized void forceUnforced() {
+        if (channel == null || !unforced) return;
+        try {
+            force();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void force() throws IOException {
+        channel.force(false);
+        lastForce = System.currentTimeMillis();
+        unforced = false;
+    }
+
+    // Ожидание идущей свертки (закрытие журнала, тесты); вызывается без блокировки журнала,
+    // которая нужна самой свертке
+    void awaitCompaction() {
+        SwingWorker<Void, Void> running;
+        synchronized (this) {
+            running = compaction;
+        }
+        if (running == null) return;
+        try {
+            running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("ОШИБКА: Не удалось свернуть журнал правок " + logFile + ": " + e.getCause());
+        }
+    }
+
+    // Свертка: копия таблицы при записи (dataFrame уже содержит все принятое до конца журнала)
+    // сохраняется в фоне, принятия тем временем дописывают журнал как обычно
+    private void startCompaction(DataFrame dataFrame) throws IOException {
+        DataFrame snapshot = dataFrame.clone();
+        long snapshotEnd = channel.size();
+        long nextGeneration = generation + 1;
+        compaction = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                boolean saved = false;
+                try {
+                    saved = cache.save(source, nextGeneration, snapshot);
+                } finally {
+                    finishCompaction(saved, nextGeneration, snapshotEnd);
+                }
+                return null;
+            }
+        };
+        compaction.execute();
+    }
+
+    // Сохраненная база становится базой журнала: новый журнал из заголовка и записей после снимка
+    // пишется во временный файл и атомарно заменяет старый, так что на диске всегда согласованная
+    // пара базы и журнала. База не сохранилась (диск полон, папка только для чтения) - следующая
+    // попытка после удвоения журнала
+    private synchronized void finishCompaction(boolean saved, long nextGeneration, long snapshotEnd) {
+        compaction = null;
+        if (channel == null) return;
+        Path tempFile = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+        long previousGeneration = generation;
+        if (saved) {
+            try {
+                flush();
+                generation = nextGeneration;
+                try (FileChannel temp = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    writeFully(temp, header());
+                    for (long position = snapshotEnd; position < channel.size(); ) {
+                        position += channel.transferTo(position, channel.size() - position, temp);
+                    }
+                    temp.force(false);
+                }
+            } catch (IOException e) {
+                System.err.println("ОШИБКА: Не удалось свернуть журнал правок " + logFile + ": " + e);
+                generation = previousGeneration;
+                saved = false;
+            }
+        }
+        try {
+            if (!saved) {
+                // Старый журнал и его база не тронуты
+                deleteQuietly(tempFile);
+                deleteQuietly(ColumnarCache.cacheFileOf(source, nextGeneration));
+                nextCompaction = 2 * channel.size();
+                return;
+            }
+            channel.close();
+            Files.move(tempFile, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+            lastForce = System.currentTimeMillis();
+            unforced = false;
+            nextCompaction = compactThreshold;
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        // Прежнюю базу может держать отображенной загруженная из нее таблица (на Windows файл тогда
+        // не удаляется) - такие файлы убираются при следующем открытии журнала
+        if (previousGeneration > 0) deleteQuietly(ColumnarCache.cacheFileOf(source, previousGeneration));
+    }
+
+    private void reset() throws IOException {
+        buffer.clear();
+        checksummed = 0;
+        checksum.reset();
+        channel.truncate(0);
+        channel.position(0);
+        writeFully(channel, header());
+        force();
+    }
+
+    private ByteBuffer header() throws IOException {
+        long baseSize = 0;
+        long baseModified = 0;
+        if (generation > 0) {
+            Path baseFile = ColumnarCache.cacheFileOf(source, generation);
+            baseSize = Files.size(baseFile);
+            baseModified = lastModified(baseFile);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC).putInt(VERSION).putLong(Files.size(source)).putLong(lastModified(source))
+                .putLong(generation).putLong(baseSize).putLong(baseModified);
+        return header.flip();
+    }
+
+    // Поколение базы из заголовка; -1, если журнал от другой версии источника, -2, если изменился файл базы
+    private static long checkHeader(ByteBuffer log, Path source) throws IOException {
+        if (log.remaining() < HEADER_LENGTH) return -1;
+        if (log.getLong() != MAGIC || log.getInt() != VERSION) return -1;
+        if (log.getLong() != Files.size(source) || log.getLong() != lastModified(source)) return -1;
+        long baseGeneration = log.getLong();
+        long baseSize = log.getLong();
+        long baseModified = log.getLong();
+        if (baseGeneration > 0) {
+            Path baseFile = ColumnarCache.cacheFileOf(source, baseGeneration);
+            if (!Files.isRegularFile(baseFile) || Files.size(baseFile) != baseSize
+                    || lastModified(baseFile) != baseModified) return -2;
+        }
+        return baseGeneration;
+    }
+
+    // Файлы баз других поколений (и недописанные временные) остаются от прежних сверток
+    private void deleteStaleBases() throws IOException {
+        String prefix = ColumnarCache.cacheFileOf(source).getFileName() + ".";
+        Path folder = logFile.toAbsolutePath().getParent();
+        DirectoryStream.Filter<Path> stale = path -> {
+            String name = path.getFileName().toString();
+            if (!name.startsWith(prefix)) return false;
+            String suffix = name.substring(prefix.length());
+            if (suffix.endsWith(".tmp")) suffix = suffix.substring(0, suffix.length() - 4);
+            return suffix.matches("[0-9]+") && !suffix.equals(Long.toString(generation));
+        };
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, stale)) {
+            for (Path file : files) deleteQuietly(file);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Применение принятых транзакций; возвращает длину действительной части файла
+    // или -1, если журнал пуст или относится к другой версии таблицы или к другой базе
+    private long replay(DataFrame dataFrame) throws IOException {
+        if (channel.size() < HEADER_LENGTH) return -1;
+        ByteBuffer log = readAll();
+        long baseGeneration = checkHeader(log, source);
+        if (baseGeneration == -2 || baseGeneration >= 0 && baseGeneration != generation) {
+            System.err.println("ОШИБКА: База таблицы изменилась, журнал правок " + logFile + " отброшен");
+        }
+        if (baseGeneration != generation) return -1;
+
+        ArrayList<Object> columnHeaders = dataFrame.getColumnHeaders();
+        ArrayList<Object[]> transaction = new ArrayList<>();
+        long validLength = log.position();
+        int replayed = 0;
+        CRC32C expected = new CRC32C();
+        try {
+            int start = log.position();
+            while (log.hasRemaining()) {
+                byte op = log.get();
+                if (op == SET) {
+                    int column = log.getInt();
+                    int row = log.getInt();
+                    transaction.add(new Object[]{column, row, getValue(log)});
+                } else if (op == COMMIT) {
+                    expected.reset();
+                    expected.update(log.duplicate().position(start).limit(log.position() - 1));
+                    if (log.getInt() != (int) expected.getValue()) break;
+                    for (Object[] edit : transaction) {
+                        int column = (Integer) edit[0];
+                        if (column >= columnHeaders.size()) continue;
+                        dataFrame.setValue(columnHeaders.get(column).toString(), (Integer) edit[1], edit[2]);
+                    }
+                    replayed += transaction.size();
+                    transaction.clear();
+                    validLength = log.position();
+                    start = log.position();
+                } else break;
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // Оборванная последняя запись: ее транзакция не была принята
+        }
+        if (replayed > 0) System.out.println("Восстановлено правок из журнала: " + replayed);
+        return validLength;
+    }
+
+    private static Object getValue(ByteBuffer log) {
+        byte kind = log.get();
+        if (kind == NUMBER) return log.getDouble();
+        if (kind == TEXT) {
+            byte[] text = new byte[log.getInt()];
+            log.get(text);
+            return new String(text, StandardCharsets.UTF_8);
+        }
+        if (kind != NULL) throw new IllegalArgumentException("Неизвестный тип значения " + kind);
+        return null;
+    }
+
+    private void putCell(int column, int row, byte kind) {
+        buffer.put(SET).putInt(column).putInt(row).put(kind);
+    }
+
+    private void ensureWritable(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush();
+    }
+
+    private void updateChecksum() {
+        if (buffer.position() == checksummed) return;
+        checksum.update(buffer.duplicate().position(checksummed).limit(buffer.position()));
+        checksummed = buffer.position();
+    }
+
+    private void flush() throws IOException {
+        updateChecksum();
+        buffer.flip();
+        writeFully(channel, buffer);
+        buffer.clear();
+        checksummed = 0;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    // После ошибки записи журнал отключается, правки остаются только в памяти
+    private void fail(IOException e) {
+        System.err.println("ОШИБКА: Не удалось записать журнал правок " + logFile + ": " + e);
+        forceTimer.stop();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    private static long lastModified(Path path) throws IOException {
+        return Files.getLastModifiedTime(path).toMillis();
+    }
+
+    private ByteBuffer readAll() throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) throw new IOException("Слишком большой журнал правок");
+        ByteBuffer log = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        while (log.hasRemaining()) {
+            if (channel.read(log, log.position()) < 0) break;
+        }
+        log.flip();
+        return log;
+    }
+}
@@ -0,0 +1,285 @@
+package tools;
+
+import data.DataFrame;
+import data.column.NumericColumn;
+import data.column.StringColumn;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EditLogTest {
+    private static final int HEADER_LENGTH = 52;
+
+    @org.junit.jupiter.api.io.TempDir
+    Path folder;
+
+    @org.junit.jupiter.api.Test
+    void testReplay() throws IOException {
+        Path source = source();
+        EditLog log = EditLog.open(source, table(), new ColumnarCache());
+        log.set(0, 1, 2.5);
+        log.set(1, 2, "новое");
+        log.commit(table());
+        log.set(0, 1, null);
+        log.set(0, 3, -1.0);
+        log.commit(table());
+        log.close();
+
+        DataFrame reopened = table();
+        EditLog.open(source, reopened, new ColumnarCache()).close();
+        assertFalse(reopened.getColumn("x").isValid(1));
+        assertEquals(-1.0, reopened.getColumn("x").get(3));
+        assertEquals("новое", reopened.getColumn("name").get(2));
+        assertEquals(0.0, reopened.getColumn("x").get(0));
+    }
+
+    // Транзакция без COMMIT не применяется
+    @org.junit.jupiter.api.Test
+    void testUncommittedEditsIgnored() throws IOException {
+        Path source = source();
+        EditLog log = EditLog.open(source, table(), new ColumnarCache());
+        log.set(0, 0, 7.0);
+        log.commit(table());
+        log.set(0, 1, 8.0);
+        log.close();
+
+        DataFrame reopened = table();
+        EditLog.open(source, reopened, new ColumnarCache()).close();
+        assertEquals(7.0, reopened.getColumn("x").get(0));
+        assertEquals(1.0, reopened.getColumn("x").get(1));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testTornTailTruncated() throws IOException {
+        Path source = source();
+        long firstEnd = writeTwoTransactions(source);
+        Path logFile = EditLog.logFileOf(source);
+        try (var channel = Files.newByteChannel(logFile, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(logFile) - 2);
+        }
+
+        DataFrame reopened = table();
+        EditLog log = EditLog.open(source, reopened, new ColumnarCache());
+        assertEquals(10.0, reopened.getColumn("x").get(0));
+        assertEquals(1.0, reopened.getColumn("x").get(1));
+        assertEquals(firstEnd, Files.size(logFile));
+        // Новые транзакции дописываются после обрезанного хвоста
+        log.set(0, 2, 30.0);
+        log.commit(reopened);
+        log.close();
+        DataFrame again = table();
+        EditLog.open(source, again, new ColumnarCache()).close();
+        assertEquals(10.0, again.getColumn("x").get(0));
+        assertEquals(30.0, again.getColumn("x").get(2));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testCorruptedTransactionRejected() throws IOException {
+        Path source = source();
+        long firstEnd = writeTwoTransactions(source);
+        Path logFile = EditLog.logFileOf(source);
+        byte[] bytes = Files.readAllBytes(logFile);
+        // Байт значения в первой записи SET второй транзакции: op, столбец, строка, тип, double
+        bytes[(int) firstEnd + 12] ^= 0x40;
+        Files.write(logFile, bytes);
+
+        DataFrame reopened = table();
+        EditLog.open(source, reopened, new ColumnarCache()).close();
+        assertEquals(10.0, reopened.getColumn("x").get(0));
+        assertEquals(1.0, reopened.getColumn("x").get(1));
+        assertEquals(firstEnd, Files.size(logFile));
+    }
+
+    // Журнал от другой версии исходного файла отбрасывается и начинается заново
+    @org.junit.jupiter.api.Test
+    void testHeaderMismatchDiscardsLog() throws IOException {
+        Path source = source();
+        writeTwoTransactions(source);
+        Files.writeString(source, "x;name\n1;a\n");
+
+        DataFrame reopened = table();
+        EditLog.open(source, reopened, new ColumnarCache()).close();
+        assertEquals(0.0, reopened.getColumn("x").get(0));
+        assertEquals(HEADER_LENGTH, Files.size(EditLog.logFileOf(source)));
+    }
+
+    // Журнал, относящийся к базе, отбрасывается, если файл базы сменился
+    @org.junit.jupiter.api.Test
+    void testChangedBaseDiscardsLog() throws IOException {
+        Path source = source();
+        ColumnarCache cache = new ColumnarCache();
+        DataFrame dataFrame = table();
+        // Вторая транзакция сворачивает журнал в базу, третья остается в журнале поверх базы
+        EditLog log = EditLog.open(source, dataFrame, cache, 0, 80);
+        edit(log, dataFrame, 0, 0, 5.0);
+        edit(log, dataFrame, 0, 1, 6.0);
+        edit(log, dataFrame, 0, 2, 7.0);
+        log.close();
+        assertEquals(1, EditLog.baseGeneration(source));
+        DataFrame reopened = reopen(source, cache);
+        assertEquals(6.0, reopened.getColumn("x").get(1));
+        assertEquals(7.0, reopened.getColumn("x").get(2));
+
+        assertTrue(cache.save(source, 1, table()));
+        Files.setLastModifiedTime(ColumnarCache.cacheFileOf(source, 1), FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        assertEquals(0, EditLog.baseGeneration(source));
+        reopened = reopen(source, cache);
+        assertEquals(1.0, reopened.getColumn("x").get(1));
+        assertEquals(2.0, reopened.getColumn("x").get(2));
+    }
+
+    // Выросший журнал сворачивается в базу нового поколения: после открытия таблица из базы плюс
+    // остаток журнала, базы прежних поколений удалены, обычный кэш источника не тронут
+    @org.junit.jupiter.api.Test
+    void testCompaction() throws IOException {
+        Path source = source();
+        ColumnarCache cache = new ColumnarCache();
+        assertTrue(cache.save(source, table()));
+        long cacheModified = Files.getLastModifiedTime(ColumnarCache.cacheFileOf(source)).toMillis();
+        DataFrame dataFrame = table();
+        EditLog log = EditLog.open(source, dataFrame, cache, 0, 200);
+        for (int i = 0; i < 40; i++) edit(log, dataFrame, 0, i % 10, (double) (100 + i));
+        edit(log, dataFrame, 1, 4, "после");
+        log.close();
+        long generation = EditLog.baseGeneration(source);
+        assertTrue(generation > 1);
+        assertTrue(Files.exists(ColumnarCache.cacheFileOf(source, generation)));
+        assertFalse(Files.exists(ColumnarCache.cacheFileOf(source, generation - 1)));
+        assertEquals(cacheModified, Files.getLastModifiedTime(ColumnarCache.cacheFileOf(source)).toMillis());
+        assertTrue(Files.size(EditLog.logFileOf(source)) <= 200 + 64);
+
+        DataFrame reopened = reopen(source, cache);
+        for (int row = 0; row < 10; row++) assertEquals(dataFrame.getColumn("x").get(row), reopened.getColumn("x").get(row));
+        assertEquals("после", reopened.getColumn("name").get(4));
+
+        // Таблица из базы сворачивается в следующее поколение, а не поверх загруженного файла
+        EditLog next = EditLog.open(source, reopened, cache, generation, 100);
+        for (int i = 0; i < 10; i++) edit(next, reopened, 0, i, (double) -i);
+        next.close();
+        assertTrue(EditLog.baseGeneration(source) > generation);
+        DataFrame again = reopen(source, cache);
+        for (int row = 0; row < 10; row++) assertEquals((double) -row, again.getColumn("x").get(row));
+    }
+
+    // Принятия не ждут записи базы: транзакции, принятые за время свертки, остаются в новом журнале
+    @org.junit.jupiter.api.Test
+    void testCommitsDuringCompactionKept() throws Exception {
+        Path source = source();
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ColumnarCache slow = new ColumnarCache() {
+            @Override
+            boolean save(Path path, long generation, DataFrame dataFrame) {
+                saving.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    return false;
+                }
+                return super.save(path, generation, dataFrame);
+            }
+        };
+        DataFrame dataFrame = table();
+        EditLog log = EditLog.open(source, dataFrame, slow, 0, 100);
+        for (int i = 0; i < 5; i++) commit(log, dataFrame, 0, i, (double) (10 + i));
+        assertTrue(saving.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) commit(log, dataFrame, 0, i + 5, (double) (20 + i));
+        commit(log, dataFrame, 1, 0, "во время свертки");
+        release.countDown();
+        log.awaitCompaction();
+        assertEquals(1, EditLog.baseGeneration(source));
+        // После замены журнал продолжает дописываться
+        edit(log, dataFrame, 1, 1, "после свертки");
+        log.close();
+
+        DataFrame reopened = reopen(source, new ColumnarCache());
+        for (int row = 0; row < 10; row++) assertEquals(dataFrame.getColumn("x").get(row), reopened.getColumn("x").get(row));
+        assertEquals("во время свертки", reopened.getColumn("name").get(0));
+        assertEquals("после свертки", reopened.getColumn("name").get(1));
+    }
+
+    // База не сохраняется: свертка повторяется не на каждом принятии, а после удвоения журнала
+    @org.junit.jupiter.api.Test
+    void testFailedCompactionBacksOff() throws IOException {
+        Path source = source();
+        AtomicInteger attempts = new AtomicInteger();
+        ColumnarCache failing = new ColumnarCache() {
+            @Override
+            boolean save(Path path, long generation, DataFrame dataFrame) {
+                attempts.incrementAndGet();
+                return false;
+            }
+        };
+        DataFrame dataFrame = table();
+        EditLog log = EditLog.open(source, dataFrame, failing, 0, 100);
+        for (int i = 0; i < 1000; i++) edit(log, dataFrame, 0, i % 10, (double) i);
+        log.close();
+        assertTrue(attempts.get() > 0);
+        assertTrue(attempts.get() <= 10, "Попыток свертки: " + attempts.get());
+
+        DataFrame reopened = reopen(source, new ColumnarCache());
+        for (int row = 0; row < 10; row++) assertEquals(dataFrame.getColumn("x").get(row), reopened.getColumn("x").get(row));
+    }
+
+    private Path source() throws IOException {
+        return Files.writeString(folder.resolve("table.csv"), "x;name\n");
+    }
+
+    // Две транзакции: x[0] = 10, затем x[1] = 20 и name[0] = "b"; возвращает конец первой
+    private static long writeTwoTransactions(Path source) throws IOException {
+        EditLog log = EditLog.open(source, table(), new ColumnarCache());
+        log.set(0, 0, 10.0);
+        log.commit(table());
+        long firstEnd = Files.size(EditLog.logFileOf(source));
+        log.set(0, 1, 20.0);
+        log.set(1, 0, "b");
+        log.commit(table());
+        log.close();
+        return firstEnd;
+    }
+
+    // Открытие как в FileManager: таблица из базы журнала, иначе из обычного кэша или источника
+    private static DataFrame reopen(Path source, ColumnarCache cache) {
+        long generation = EditLog.baseGeneration(source);
+        DataFrame dataFrame = generation > 0 ? cache.load(source, generation) : null;
+        if (dataFrame == null) {
+            generation = 0;
+            dataFrame = cache.load(source);
+        }
+        if (dataFrame == null) dataFrame = table();
+        EditLog.open(source, dataFrame, cache, generation).close();
+        return dataFrame;
+    }
+
+    // Правка с ожиданием свертки, которую она запустила: последовательность сверток предсказуема
+    private static void edit(EditLog log, DataFrame dataFrame, int column, int row, Object value) {
+        commit(log, dataFrame, column, row, value);
+        log.awaitCompaction();
+    }
+
+    private static void commit(EditLog log, DataFrame dataFrame, int column, int row, Object value) {
+        dataFrame.setValue(dataFrame.getColumnHeaders().get(column).toString(), row, value);
+        log.set(column, row, value);
+        log.commit(dataFrame);
+    }
+
+    private static DataFrame table() {
+        NumericColumn x = new NumericColumn(10);
+        StringColumn names = new StringColumn(10);
+        for (int i = 0; i < 10; i++) {
+            x.setDouble(i, i);
+            names.setString(i, "s" + i);
+        }
+        return new DataFrame(new ArrayList<>(List.of("x", "name")), List.of(x, names));
+    }
+}
@@ -0,0 +1,118 @@
+package tools;
+
+import data.DataFrame;
+import data.DataFrameBuilder;
+
+import java.util.Arrays;
+
+// Приемник ячеек для потоковых читателей Excel. Первая строка листа - заголовки, остальные
+// строки пишутся сразу в буферы столбцов по номеру столбца ячейки. В памяти держится только
+// текущая строка, поэтому расход памяти не зависит от способа хранения листа в файле.
+// Ход загрузки сообщается каждые PROGRESS_ROWS строк, там же проверяется отмена
+class ExcelColumnCollector {
+    private static final byte EMPTY = 0;
+    private static final byte NUMBER = 1;
+    private static final byte STRING = 2;
+    private static final int PROGRESS_ROWS = 10000;
+
+    private final LoadProgress progress;
+    private int rowCount;
+
+    private final DataFrameBuilder frame = new DataFrameBuilder();
+    // Номер столбца листа -> номер столбца таблицы (-1, если у столбца нет заголовка)
+    private int[] slots = new int[0];
+    private boolean headerRow = true;
+
+    private byte[] rowKinds;
+    private double[] rowValues;
+    private String[] rowStrings;
+    private boolean rowEmpty;
+
+    ExcelColumnCollector() {
+        this(new LoadProgress());
+    }
+
+    ExcelColumnCollector(LoadProgress progress) {
+        this.progress = progress;
+    }
+
+    void startRow() {
+        rowEmpty = true;
+    }
+
+    void cell(int column, double value) {
+        if (headerRow) {
+            addHeader(column, value);
+            return;
+        }
+        int slot = slotOf(column);
+        if (slot < 0) return;
+        rowKinds[slot] = NUMBER;
+        rowValues[slot] = value;
+        rowEmpty = false;
+    }
+
+    void cell(int column, String value) {
+        String trimmed = value.trim();
+        if (headerRow) {
+            addHeader(column, trimmed);
+            return;
+        }
+        int slot = slotOf(column);
+        if (slot < 0) return;
+        rowKinds[slot] = STRING;
+        rowStrings[slot] = trimmed;
+        if (!trimmed.isEmpty()) rowEmpty = false;
+    }
+
+    // Строки, в которых нет ни одного непустого значения, пропускаются
+    void endRow() {
+        if (headerRow) {
+            headerRow = false;
+            int columnCount = frame.getColumnCount();
+            rowKinds = new byte[columnCount];
+            rowValues = new double[columnCount];
+            rowStrings = new String[columnCount];
+            return;
+        }
+        if (!rowEmpty) {
+            for (int i = 0; i < rowKinds.length; i++) {
+                switch (rowKinds[i]) {
+                    case NUMBER:
+                        frame.column(i).appendDouble(rowValues[i]);
+                        break;
+                    case STRING:
+                        frame.column(i).appendString(rowStrings[i]);
+                        break;
+                    default:
+                        frame.column(i).appendNull();
+                }
+            }
+            rowCount++;
+            if (rowCount == LoadProgress.PREVIEW_ROWS) progress.preview(frame.head(rowCount));
+            if (rowCount % PROGRESS_ROWS == 0) {
+                progress.checkCancelled();
+                progress.progress(-1, -1, rowCount);
+            }
+        }
+        Arrays.fill(rowKinds, EMPTY);
+        Arrays.fill(rowStrings, null);
+    }
+
+    DataFrame toDataFrame() {
+        return frame.build();
+    }
+
+    private void addHeader(int column, Object header) {
+        if (column >= slots.length) {
+            int oldLength = slots.length;
+            slots = Arrays.copyOf(slots, Math.max(column + 1, oldLength * 2));
+            Arrays.fill(slots, oldLength, slots.length, -1);
+        }
+        slots[column] = frame.addColumn(header);
+    }
+
+    private int slotOf(int column) {
+        return column < slots.length ? slots[column] : -1;
+    }
+}
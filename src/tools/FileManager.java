@@ -1,31 +1,21 @@
 package tools;
 
-import com.opencsv.CSVReader;
+import data.DataFrame;
 import data.DataMediator;
-import org.apache.poi.hssf.usermodel.HSSFSheet;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import data.column.Column;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.Reader;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.function.Function;
 
 public class FileManager {
-    private boolean columnsIterating;
-    private ArrayList<Object> columnHeaders;
-    private ArrayList<ArrayList<Object>> tableData;
     private DataMediator mediator;
+    private ColumnarCache cache = new ColumnarCache();
+    private EditLog editLog;
 
     private FileManager() {
         mediator = DataMediator.getInstance();
@@ -45,106 +35,97 @@ public class FileManager {
     }
 
     public void loadDataCSV(String pathName) {
-        Path filePath = Paths.get(pathName);
-        ArrayList<String[]> inputData = new ArrayList<>();
-        try (Reader reader = Files.newBufferedReader(filePath)) {
-            CSVReader csvReader = new CSVReader(reader);
-            String[] line;
-            while ((line = csvReader.readNext()) != null) {
-                inputData.add(line);
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        columnHeaders = new ArrayList<>();
-        tableData = new ArrayList<>();
-        columnHeaders.addAll(Arrays.asList(inputData.get(0)));
-
-        for (int i = 1; i < inputData.size(); i++) {
-            ArrayList<Object> row = new ArrayList<>();
-            for (int j = 0; j < inputData.get(i).length; j++) {
-                try {
-                    row.add(Double.parseDouble(inputData.get(i)[j].trim()));
-                } catch (NumberFormatException ex) {
-                    row.add(inputData.get(i)[j].trim());
-                }
+        install(readDataCSV(pathName, new LoadProgress()));
+    }
+
+    // Чтение таблицы и ее журнала правок без изменения посредника, поэтому может выполняться
+    // вне потока Swing; при отмене через progress бросает CancellationException
+    public LoadedTable readDataCSV(String pathName, LoadProgress progress) {
+        return read(Paths.get(pathName), path -> {
+            DataFrame dataFrame;
+            try {
+                dataFrame = new ParallelCsvLoader().load(path, progress);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
             }
-            tableData.add(row);
-        }
-        mediator.formDataFrame(columnHeaders, tableData);
-        mediator.formTableModel(columnHeaders, tableData);
+            cache.save(path, dataFrame);
+            return dataFrame;
+        });
     }
 
     public void loadDataExcel(String pathName) {
+        install(readDataExcel(pathName, new LoadProgress()));
+    }
 
-        try {
-            columnsIterating = true;
-            columnHeaders = new ArrayList<>();
-            tableData = new ArrayList<>();
+    public LoadedTable readDataExcel(String pathName, LoadProgress progress) {
+        return read(Paths.get(pathName), path -> readExcel(path.toFile(), progress));
+    }
+
+    // Таблица берется из базы журнала правок (кэша, в который свернуты прежние правки), иначе из
+    // обычного кэша или разбором исходного файла; затем к ней применяются правки из журнала
+    private LoadedTable read(Path path, Function<Path, DataFrame> parser) {
+        long generation = EditLog.baseGeneration(path);
+        DataFrame dataFrame = generation > 0 ? cache.load(path, generation) : null;
+        if (dataFrame == null) {
+            generation = 0;
+            dataFrame = cache.load(path);
+        }
+        if (dataFrame == null) dataFrame = parser.apply(path);
+        return new LoadedTable(dataFrame, EditLog.open(path, dataFrame, cache, generation));
+    }
 
-            Object wb = null;
-            Object sheet = null;
-            Iterator<Row> itr = null;
+    // Прочитанная таблица становится текущей: журнал правок прежней таблицы закрывается.
+    // Выполняется в потоке Swing, где посредник читают таблица и кнопки
+    public void install(LoadedTable table) {
+        if (editLog != null) editLog.close();
+        editLog = table.editLog;
+        mediator.setEditLog(editLog);
+        mediator.formDataFrame(table.dataFrame);
+        mediator.formTableModel(table.dataFrame);
+    }
 
-            File file = new File(pathName);
-            FileInputStream fis = new FileInputStream(file);
+    // При выходе из программы последние принятые правки дописываются и сбрасываются на диск
+    public void closeEditLog() {
+        if (editLog != null) editLog.close();
+        editLog = null;
+        mediator.setEditLog(null);
+    }
 
+    private DataFrame readExcel(File file, LoadProgress progress) {
+        DataFrame dataFrame = null;
+        try {
             int dotIndex = file.getAbsolutePath().lastIndexOf('.');
             String extension = (dotIndex == -1) ? "" : file.getAbsolutePath().substring(dotIndex + 1);
             if (extension.equals("xlsx")) {
-                wb = new XSSFWorkbook(fis);
-                sheet = ((XSSFWorkbook) wb).getSheetAt(0);
-                itr = ((XSSFSheet) sheet).iterator();
+                dataFrame = new XlsxStreamReader().load(file, progress);
             } else if (extension.equals("xls")) {
-                wb = new HSSFWorkbook(fis);
-                sheet = ((HSSFWorkbook) wb).getSheetAt(0);
-                itr = ((HSSFSheet) sheet).iterator();
+                dataFrame = new XlsEventReader(progress).load(file);
             } else {
                 System.out.println("ОШИБКА: Невозможно прочитать файл");
             }
-            while (itr.hasNext())
-            {
-                Row row = itr.next();
-                Iterator<Cell> cellIterator = row.cellIterator();
-                ArrayList<Object> tableDataRow = new ArrayList<>();
-                while (cellIterator.hasNext())
-                {
-                    Cell cell = cellIterator.next();
-                    switch (cell.getCellType())
-                    {
-                        case Cell.CELL_TYPE_STRING:
-                            //System.out.print(cell.getStringCellValue() + "\t\t\t");
-                            if (columnsIterating) columnHeaders.add(cell.getStringCellValue().trim());
-                            else tableDataRow.add(cell.getStringCellValue().trim());
-                            break;
-                        case Cell.CELL_TYPE_NUMERIC:
-                            //System.out.print(cell.getNumericCellValue() + "\t\t\t");
-                            if (columnsIterating) columnHeaders.add(cell.getNumericCellValue());
-                            else tableDataRow.add(cell.getNumericCellValue());
-                            break;
-                        default:
-                    }
-                }
-                boolean isEmptyRow = true;
-                for (Object cell : tableDataRow) {
-                    if (!cell.toString().equals("")) {
-                        isEmptyRow = false;
-                        break;
-                    }
-                }
-                if (!isEmptyRow) tableData.add(tableDataRow);
-                //System.out.println("");
-                columnsIterating = false;
-                ((Workbook) wb).close();
-                fis.close();
-            }
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
         }
-        //System.out.println(columnHeaders.toArray()[1] + " " + tableData.toArray()[0]);
+        if (dataFrame == null) return new DataFrame(new ArrayList<>(), new ArrayList<Column>());
+        cache.save(file.toPath(), dataFrame);
+        return dataFrame;
+    }
+
+    // Таблица с уже примененными правками из журнала и сам журнал (null - таблица без журнала)
+    public static class LoadedTable {
+        private final DataFrame dataFrame;
+        private final EditLog editLog;
 
-        mediator.formDataFrame(columnHeaders, tableData);
-        mediator.formTableModel(columnHeaders, tableData);
+        LoadedTable(DataFrame dataFrame, EditLog editLog) {
+            this.dataFrame = dataFrame;
+            this.editLog = editLog;
+        }
+
+        public DataFrame getDataFrame() {
+            return dataFrame;
+        }
     }
 
     private static class FileManagerHolder {
@@ -0,0 +1,33 @@
+package tools;
+
+import data.DataFrame;
+
+import java.util.concurrent.CancellationException;
+
+// Ход загрузки файла. Загрузчики сообщают обработанные байты и строки и отдают первые строки
+// таблицы для предварительного просмотра; интерфейс может отменить загрузку через cancel().
+// progress и preview вызываются из потока загрузки, их переопределяет вызывающий код
+public class LoadProgress {
+    public static final int PREVIEW_ROWS = 1000;
+
+    private volatile boolean cancelled;
+
+    // totalBytes = -1, если размер заранее неизвестен
+    public void progress(long bytesRead, long totalBytes, long rows) {
+    }
+
+    public void preview(DataFrame firstRows) {
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void checkCancelled() {
+        if (cancelled) throw new CancellationException("Загрузка файла отменена");
+    }
+}
@@ -0,0 +1,346 @@
+package tools;
+
+import data.DataFrame;
+import data.column.Column;
+import data.column.ColumnBuilder;
+import data.column.ColumnType;
+import data.column.MappedNumericColumn;
+import data.column.NumberParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Загрузка CSV по частям: файл отображается в память, один быстрый проход по байтам находит
+// границы записей с учетом кавычек, затем куски разбираются параллельно сразу в буферы столбцов.
+// Правила разбора совпадают с OpenCSV (см. CsvRecordParser).
+// Одновременно в памяти держится лишь окно разобранных кусков; если числовые столбцы целиком
+// не помещаются в кучу, они сливаются во временные файлы вне кучи (MappedNumericColumn)
+class ParallelCsvLoader {
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 4 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int SAMPLE_ROWS = LoadProgress.PREVIEW_ROWS;
+
+    private final ForkJoinPool pool;
+
+    ParallelCsvLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    ParallelCsvLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    DataFrame load(Path path) throws IOException {
+        return load(path, new LoadProgress());
+    }
+
+    // Отмена проверяется между кусками; уже запущенные куски дорабатывают, но не сливаются
+    DataFrame load(Path path, LoadProgress progress) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) return new DataFrame(new ArrayList<>(), new ArrayList<Column>());
+            MappedFile file = new MappedFile(channel, size);
+            long chunkSize = Math.min(MAX_CHUNK_SIZE,
+                    Math.max(MIN_CHUNK_SIZE, size / ((long) pool.getParallelism() * CHUNKS_PER_THREAD)));
+            long[] bounds = findRecordBounds(file, size, chunkSize);
+
+            ArrayList<Object> columnHeaders = new ArrayList<>(parseHeader(channel, bounds[0]));
+            int columnCount = columnHeaders.size();
+            ColumnSample sample = bounds.length > 1 ? sampleColumns(channel, bounds[0], bounds[1], columnCount) : null;
+            if (sample != null) progress.preview(sample.toDataFrame(columnHeaders));
+
+            ColumnMerger[] mergers = newMergers(sample, columnCount, size);
+            // Куски разбираются параллельно, но сливаются по порядку; в работе не больше окна кусков
+            int window = pool.getParallelism() * 2;
+            ArrayDeque<Future<ColumnBuilder[]>> chunks = new ArrayDeque<>();
+            int merged = 0;
+            boolean complete = false;
+            try {
+                for (int i = 0; i + 1 < bounds.length; i++) {
+                    progress.checkCancelled();
+                    long from = bounds[i];
+                    long to = bounds[i + 1];
+                    chunks.add(pool.submit(() -> parseChunk(channel, from, to, sample)));
+                    if (chunks.size() >= window) merge(mergers, await(chunks.poll()), bounds[++merged], size, progress);
+                }
+                while (!chunks.isEmpty()) merge(mergers, await(chunks.poll()), bounds[++merged], size, progress);
+                complete = true;
+            } finally {
+                for (Future<ColumnBuilder[]> chunk : chunks) chunk.cancel(false);
+                // При отмене или ошибке временные файлы столбцов больше не нужны
+                if (!complete) {
+                    for (ColumnMerger merger : mergers) merger.close();
+                }
+            }
+
+            ArrayList<Column> builtColumns = new ArrayList<>();
+            for (ColumnMerger merger : mergers) builtColumns.add(merger.build());
+            return new DataFrame(columnHeaders, builtColumns);
+        }
+    }
+
+    // Границы кусков: первая - конец строки заголовка, далее ближайшие концы записей после каждых chunkSize байт
+    private static long[] findRecordBounds(MappedFile file, long size, long chunkSize) throws IOException {
+        CsvRecordParser.BoundaryScanner scanner = new CsvRecordParser.BoundaryScanner();
+        ArrayList<Long> bounds = new ArrayList<>();
+        long nextTarget = 0;
+        long lineStart = 0;
+        while (lineStart < size) {
+            long lineEnd = lineStart;
+            byte b;
+            while (lineEnd < size && (b = file.get(lineEnd)) != '\n' && b != '\r') lineEnd++;
+            long next = skipLineBreak(file, lineEnd, size);
+            if (scanner.scanLine(file, lineStart, lineEnd) && next >= nextTarget) {
+                bounds.add(next);
+                nextTarget = next + chunkSize;
+            }
+            lineStart = next;
+        }
+        if (scanner.isPending()) throw new IOException("Незакрытая кавычка в конце CSV файла");
+        if (bounds.get(bounds.size() - 1) != size) bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) result[i] = bounds.get(i);
+        return result;
+    }
+
+    private static long skipLineBreak(MappedFile file, long lineEnd, long size) {
+        if (lineEnd >= size) return lineEnd;
+        if (file.get(lineEnd) == '\r' && lineEnd + 1 < size && file.get(lineEnd + 1) == '\n') return lineEnd + 2;
+        return lineEnd + 1;
+    }
+
+    private static List<String> parseHeader(FileChannel channel, long headerEnd) throws IOException {
+        CharBuffer text = decode(channel, 0, headerEnd);
+        CsvRecordParser parser = new CsvRecordParser();
+        ArrayList<String> header = new ArrayList<>();
+        forEachLine(text, (chars, from, to) -> {
+            if (parser.parseLine(chars, from, to)) header.addAll(parser.getFields());
+        });
+        return header;
+    }
+
+    // Типы столбцов и средняя длина записи по первым SAMPLE_ROWS записям: по ним буферы кусков
+    // сразу заводятся нужного типа и примерно нужного размера
+    private static ColumnSample sampleColumns(FileChannel channel, long from, long to, int columnCount) throws IOException {
+        CharBuffer text = decode(channel, from, to);
+        ColumnBuilder[] builders = newBuilders(columnCount, null, SAMPLE_ROWS);
+        CsvRecordParser parser = new CsvRecordParser();
+        NumberParser numberParser = new NumberParser();
+        char[] chars = text.array();
+        int end = text.arrayOffset() + text.limit();
+        int lineStart = text.arrayOffset() + text.position();
+        int start = lineStart;
+        while (lineStart < end && builders.length > 0 && builders[0].size() < SAMPLE_ROWS) {
+            int lineEnd = findLineEnd(chars, lineStart, end);
+            if (parser.parseLine(chars, lineStart, lineEnd)) appendRecord(parser, numberParser, builders);
+            lineStart = nextLine(chars, lineEnd, end);
+        }
+        ColumnType[] types = new ColumnType[columnCount];
+        for (int c = 0; c < columnCount; c++) types[c] = builders[c].getType();
+        int rows = columnCount > 0 ? builders[0].size() : 0;
+        double charsPerRow = rows > 0 ? (double) (lineStart - start) / rows : 0;
+        return new ColumnSample(types, charsPerRow, builders);
+    }
+
+    private static ColumnBuilder[] parseChunk(FileChannel channel, long from, long to, ColumnSample sample) throws IOException {
+        CharBuffer text = decode(channel, from, to);
+        int columnCount = sample.types.length;
+        int expectedRows = sample.charsPerRow > 0 ? (int) Math.min(Integer.MAX_VALUE - 8, text.remaining() / sample.charsPerRow + 1) : 0;
+        ColumnBuilder[] builders = newBuilders(columnCount, sample.types, expectedRows);
+        CsvRecordParser parser = new CsvRecordParser();
+        NumberParser numberParser = new NumberParser();
+        forEachLine(text, (chars, lineFrom, lineTo) -> {
+            if (parser.parseLine(chars, lineFrom, lineTo)) appendRecord(parser, numberParser, builders);
+        });
+        return builders;
+    }
+
+    private static ColumnBuilder[] newBuilders(int columnCount, ColumnType[] types, int capacity) {
+        ColumnBuilder[] builders = new ColumnBuilder[columnCount];
+        for (int c = 0; c < columnCount; c++) builders[c] = new ColumnBuilder(types == null ? null : types[c], capacity);
+        return builders;
+    }
+
+    // Ячейки обрезаются и разбираются как числа, иначе остаются строками; недостающие ячейки пустые.
+    // Строка создается только для нечисловой ячейки
+    private static void appendRecord(CsvRecordParser parser, NumberParser numberParser, ColumnBuilder[] builders) {
+        char[] buffer = parser.getBuffer();
+        int fieldCount = parser.getFieldCount();
+        for (int c = 0; c < builders.length; c++) {
+            if (c >= fieldCount) {
+                builders[c].appendNull();
+                continue;
+            }
+            int from = parser.getFieldStart(c);
+            int to = parser.getFieldEnd(c);
+            if (numberParser.parse(buffer, from, to)) {
+                builders[c].appendDouble(numberParser.getValue());
+            } else {
+                while (from < to && buffer[from] <= ' ') from++;
+                while (to > from && buffer[to - 1] <= ' ') to--;
+                builders[c].appendString(new String(buffer, from, to - from));
+            }
+        }
+    }
+
+    // Столбец, который по выборке числовой, уходит вне кучи, если все такие столбцы вместе
+    // заняли бы больше четверти кучи
+    private static ColumnMerger[] newMergers(ColumnSample sample, int columnCount, long fileSize) throws IOException {
+        ColumnMerger[] mergers = new ColumnMerger[columnCount];
+        long expectedRows = sample != null && sample.charsPerRow > 0 ? (long) (fileSize / sample.charsPerRow) : 0;
+        int numericCount = 0;
+        for (int c = 0; c < columnCount; c++) {
+            if (sample != null && sample.types[c] == ColumnType.NUMERIC) numericCount++;
+        }
+        boolean offHeap = expectedRows * Double.BYTES * numericCount > Runtime.getRuntime().maxMemory() / 4;
+        for (int c = 0; c < columnCount; c++) {
+            boolean numeric = sample != null && sample.types[c] == ColumnType.NUMERIC;
+            mergers[c] = new ColumnMerger(offHeap && numeric ? MappedNumericColumn.createTemporary() : null);
+        }
+        return mergers;
+    }
+
+    private static void merge(ColumnMerger[] mergers, ColumnBuilder[] chunk, long bytesRead, long size,
+                              LoadProgress progress) {
+        progress.checkCancelled();
+        for (int c = 0; c < mergers.length; c++) mergers[c].append(chunk[c]);
+        progress.progress(bytesRead, size, mergers.length > 0 ? mergers[0].size() : 0);
+    }
+
+    // Строки разделяются так же, как в BufferedReader.readLine: \n, \r или \r\n
+    private static void forEachLine(CharBuffer text, LineConsumer consumer) {
+        char[] chars = text.array();
+        int end = text.arrayOffset() + text.limit();
+        int lineStart = text.arrayOffset() + text.position();
+        while (lineStart < end) {
+            int lineEnd = findLineEnd(chars, lineStart, end);
+            consumer.accept(chars, lineStart, lineEnd);
+            lineStart = nextLine(chars, lineEnd, end);
+        }
+    }
+
+    private static int findLineEnd(char[] chars, int from, int end) {
+        int lineEnd = from;
+        while (lineEnd < end && chars[lineEnd] != '\n' && chars[lineEnd] != '\r') lineEnd++;
+        return lineEnd;
+    }
+
+    private static int nextLine(char[] chars, int lineEnd, int end) {
+        if (lineEnd < end && chars[lineEnd] == '\r' && lineEnd + 1 < end && chars[lineEnd + 1] == '\n') return lineEnd + 2;
+        return lineEnd + 1;
+    }
+
+    private static CharBuffer decode(FileChannel channel, long from, long to) throws IOException {
+        if (to - from > Integer.MAX_VALUE) throw new IOException("Слишком длинная запись в CSV файле");
+        ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        return StandardCharsets.UTF_8.newDecoder().decode(bytes);
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static class ColumnSample {
+        private final ColumnType[] types;
+        private final double charsPerRow;
+        // Первые строки файла, они же предварительный просмотр
+        private final ColumnBuilder[] rows;
+
+        ColumnSample(ColumnType[] types, double charsPerRow, ColumnBuilder[] rows) {
+            this.types = types;
+            this.charsPerRow = charsPerRow;
+            this.rows = rows;
+        }
+
+        DataFrame toDataFrame(ArrayList<Object> columnHeaders) {
+            ArrayList<Column> columns = new ArrayList<>();
+            for (ColumnBuilder builder : rows) columns.add(builder.build());
+            return new DataFrame(new ArrayList<>(columnHeaders), columns);
+        }
+    }
+
+    // Итоговый столбец: накопитель на куче или числовой столбец во временном файле
+    private static class ColumnMerger {
+        private MappedNumericColumn mapped;
+        private ColumnBuilder heap;
+
+        ColumnMerger(MappedNumericColumn mapped) {
+            this.mapped = mapped;
+            if (mapped == null) heap = new ColumnBuilder();
+        }
+
+        void append(ColumnBuilder chunk) {
+            if (mapped != null && chunk.getType() != ColumnType.NUMERIC) moveToHeap();
+            if (mapped != null) chunk.appendTo(mapped);
+            else heap.appendAll(chunk);
+        }
+
+        // Строка в столбце, который по выборке был числовым: уже слитые числа возвращаются в кучу
+        private void moveToHeap() {
+            heap = new ColumnBuilder(ColumnType.NUMERIC, mapped.size());
+            for (int i = 0; i < mapped.size(); i++) heap.appendDouble(mapped.getDouble(i));
+            mapped.close();
+            mapped = null;
+        }
+
+        int size() {
+            return mapped != null ? mapped.size() : heap.size();
+        }
+
+        // Столбец вне кучи дописан до конца, его временный канал больше не нужен
+        Column build() {
+            if (mapped == null) return heap.build();
+            mapped.close();
+            return mapped;
+        }
+
+        void close() {
+            if (mapped != null) mapped.close();
+        }
+    }
+
+    private interface LineConsumer {
+        void accept(char[] chars, int from, int to);
+    }
+
+    // Файл, отображенный в память сегментами по 1 ГБ, чтобы не упираться в предел размера MappedByteBuffer
+    private static class MappedFile implements CsvRecordParser.ByteSource {
+        private final MappedByteBuffer[] segments;
+
+        MappedFile(FileChannel channel, long size) throws IOException {
+            long segmentSize = 1L << SEGMENT_SHIFT;
+            segments = new MappedByteBuffer[(int) ((size + segmentSize - 1) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, size - position));
+            }
+        }
+
+        @Override
+        public byte get(long position) {
+            return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & ((1L << SEGMENT_SHIFT) - 1)));
+        }
+    }
+}
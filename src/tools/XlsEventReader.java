@@ -0,0 +1,144 @@
+package tools;
+
+import data.DataFrame;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+
+import java.io.File;
+import java.io.IOException;
+
+// Чтение .xls по потоку записей BIFF (HSSFEventFactory) без построения HSSFWorkbook.
+// Числа и строки из таблицы SST уходят в ExcelColumnCollector по мере появления записей,
+// поэтому время линейно по размеру файла, а в памяти кроме столбцов только SST.
+// Читается первый рабочий лист, как и раньше через getSheetAt(0)
+class XlsEventReader implements HSSFListener {
+    // Код числового результата формулы в BIFF (CellType.NUMERIC; getCode и forInt в POI 3.17 устарели)
+    private static final int NUMERIC_RESULT = 0;
+
+    private final ExcelColumnCollector collector;
+    private SSTRecord sharedStrings;
+    private int worksheetCount;
+    private boolean inFirstSheet;
+    private int currentRow = -1;
+    // Строковый результат формулы приходит отдельной записью StringRecord сразу после FormulaRecord
+    private int formulaRow = -1;
+    private int formulaColumn;
+
+    XlsEventReader() {
+        this(new LoadProgress());
+    }
+
+    XlsEventReader(LoadProgress progress) {
+        collector = new ExcelColumnCollector(progress);
+    }
+
+    DataFrame load(File file) throws IOException {
+        try (NPOIFSFileSystem fs = new NPOIFSFileSystem(file, true)) {
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(this);
+            new HSSFEventFactory().processWorkbookEvents(request, fs.getRoot());
+        }
+        finishRow();
+        return collector.toDataFrame();
+    }
+
+    @Override
+    public void processRecord(Record record) {
+        switch (record.getSid()) {
+            case BOFRecord.sid:
+                if (((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET) inFirstSheet = worksheetCount++ == 0;
+                break;
+            case EOFRecord.sid:
+                if (inFirstSheet) finishRow();
+                inFirstSheet = false;
+                break;
+            case SSTRecord.sid:
+                sharedStrings = (SSTRecord) record;
+                break;
+            default:
+                if (inFirstSheet) processCell(record);
+        }
+    }
+
+    private void processCell(Record record) {
+        switch (record.getSid()) {
+            case NumberRecord.sid: {
+                NumberRecord number = (NumberRecord) record;
+                moveToRow(number.getRow());
+                collector.cell(number.getColumn(), number.getValue());
+                break;
+            }
+            case RKRecord.sid: {
+                RKRecord rk = (RKRecord) record;
+                moveToRow(rk.getRow());
+                collector.cell(rk.getColumn(), rk.getRKNumber());
+                break;
+            }
+            case MulRKRecord.sid: {
+                MulRKRecord mulRk = (MulRKRecord) record;
+                moveToRow(mulRk.getRow());
+                for (int i = 0; i < mulRk.getNumColumns(); i++) {
+                    collector.cell(mulRk.getFirstColumn() + i, mulRk.getRKNumberAt(i));
+                }
+                break;
+            }
+            case LabelSSTRecord.sid: {
+                LabelSSTRecord label = (LabelSSTRecord) record;
+                moveToRow(label.getRow());
+                if (sharedStrings != null) {
+                    collector.cell(label.getColumn(), sharedStrings.getString(label.getSSTIndex()).getString());
+                }
+                break;
+            }
+            case LabelRecord.sid: {
+                LabelRecord label = (LabelRecord) record;
+                moveToRow(label.getRow());
+                collector.cell(label.getColumn(), label.getValue());
+                break;
+            }
+            case FormulaRecord.sid: {
+                FormulaRecord formula = (FormulaRecord) record;
+                moveToRow(formula.getRow());
+                if (formula.hasCachedResultString()) {
+                    formulaRow = formula.getRow();
+                    formulaColumn = formula.getColumn();
+                } else if (formula.getCachedResultType() == NUMERIC_RESULT) {
+                    collector.cell(formula.getColumn(), formula.getValue());
+                }
+                break;
+            }
+            case StringRecord.sid:
+                if (formulaRow == currentRow) collector.cell(formulaColumn, ((StringRecord) record).getString());
+                formulaRow = -1;
+                break;
+            default:
+        }
+    }
+
+    // Ячейки в потоке BIFF идут по строкам, смена номера строки завершает предыдущую
+    private void moveToRow(int row) {
+        if (row == currentRow) return;
+        finishRow();
+        currentRow = row;
+        collector.startRow();
+    }
+
+    private void finishRow() {
+        if (currentRow < 0) return;
+        collector.endRow();
+        currentRow = -1;
+    }
+}
@@ -0,0 +1,236 @@
+package tools;
+
+import data.DataFrame;
+import data.column.NumberParser;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Потоковое чтение .xlsx: XML первого листа разбирается SAX-обработчиком без построения
+// XSSFWorkbook, ячейки сразу уходят в ExcelColumnCollector. В памяти остаются только таблица
+// общих строк и сами столбцы. Обе части читаются своими обработчиками, без XSSFModel-классов,
+// которым нужны схемы poi-ooxml-schemas
+class XlsxStreamReader {
+
+    DataFrame load(File file) throws IOException {
+        return load(file, new LoadProgress());
+    }
+
+    DataFrame load(File file, LoadProgress progress) throws IOException {
+        OPCPackage pkg;
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+        } catch (OpenXML4JException e) {
+            throw new IOException(e);
+        }
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            List<String> sharedStrings = readSharedStrings(reader);
+            ExcelColumnCollector collector = new ExcelColumnCollector(progress);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    parse(sheet, new SheetHandler(sharedStrings, collector));
+                }
+            }
+            return collector.toDataFrame();
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException(e);
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    private static List<String> readSharedStrings(XSSFReader reader) throws IOException, OpenXML4JException,
+            SAXException, ParserConfigurationException {
+        SharedStringsHandler handler = new SharedStringsHandler();
+        InputStream data;
+        try {
+            data = reader.getSharedStringsData();
+        } catch (IllegalArgumentException e) {
+            // В книге без строковых ячеек таблицы общих строк нет
+            return handler.strings;
+        }
+        if (data == null) return handler.strings;
+        try (InputStream stream = data) {
+            parse(stream, handler);
+        }
+        return handler.strings;
+    }
+
+    private static void parse(InputStream stream, DefaultHandler handler) throws IOException, SAXException,
+            ParserConfigurationException {
+        XMLReader xmlReader = SAXHelper.newXMLReader();
+        xmlReader.setContentHandler(handler);
+        xmlReader.parse(new InputSource(stream));
+    }
+
+    // Номер столбца из ссылки на ячейку: "A1" -> 0, "AB12" -> 27
+    static int columnIndex(String reference) {
+        int column = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if (c < 'A' || c > 'Z') break;
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    // <si> - одна строка; форматированная строка состоит из нескольких <r><t>, фонетика <rPh> пропускается
+    private static class SharedStringsHandler extends DefaultHandler {
+        private final ArrayList<String> strings = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        private boolean inText;
+        private int phoneticDepth;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "si":
+                    text.setLength(0);
+                    break;
+                case "rPh":
+                    phoneticDepth++;
+                    break;
+                case "t":
+                    inText = phoneticDepth == 0;
+                    break;
+                default:
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "si":
+                    strings.add(text.toString());
+                    break;
+                case "rPh":
+                    phoneticDepth--;
+                    break;
+                case "t":
+                    inText = false;
+                    break;
+                default:
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inText) text.append(ch, start, length);
+        }
+    }
+
+    // Ячейка <c r="B2" t="..."><v>...</v></c>: t="s" - номер общей строки, "inlineStr" - строка в <is><t>,
+    // "str" - строковый результат формулы, без t или "n" - число. Логические значения и ошибки пропускаются
+    private static class SheetHandler extends DefaultHandler {
+        private final List<String> sharedStrings;
+        private final ExcelColumnCollector collector;
+        private final NumberParser numberParser = new NumberParser();
+        private final StringBuilder value = new StringBuilder();
+        private char[] chars = new char[64];
+        private boolean inValue;
+        private boolean hasValue;
+        private int phoneticDepth;
+        private int column;
+        private int nextColumn;
+        private String type;
+
+        SheetHandler(List<String> sharedStrings, ExcelColumnCollector collector) {
+            this.sharedStrings = sharedStrings;
+            this.collector = collector;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row":
+                    collector.startRow();
+                    nextColumn = 0;
+                    break;
+                case "c":
+                    String reference = attributes.getValue("r");
+                    column = reference != null ? columnIndex(reference) : nextColumn;
+                    nextColumn = column + 1;
+                    type = attributes.getValue("t");
+                    value.setLength(0);
+                    hasValue = false;
+                    break;
+                case "v":
+                    inValue = true;
+                    hasValue = true;
+                    break;
+                case "t":
+                    inValue = phoneticDepth == 0;
+                    hasValue = true;
+                    break;
+                case "rPh":
+                    phoneticDepth++;
+                    break;
+                default:
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v":
+                case "t":
+                    inValue = false;
+                    break;
+                case "rPh":
+                    phoneticDepth--;
+                    break;
+                case "c":
+                    if (hasValue) emitCell();
+                    break;
+                case "row":
+                    collector.endRow();
+                    break;
+                default:
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) value.append(ch, start, length);
+        }
+
+        private void emitCell() {
+            if (type == null || type.equals("n")) {
+                if (chars.length < value.length()) chars = new char[value.length()];
+                value.getChars(0, value.length(), chars, 0);
+                if (numberParser.parse(chars, 0, value.length())) collector.cell(column, numberParser.getValue());
+                return;
+            }
+            switch (type) {
+                case "s":
+                    if (numberParser.parse(value.toString())) {
+                        int index = (int) numberParser.getValue();
+                        if (index >= 0 && index < sharedStrings.size()) collector.cell(column, sharedStrings.get(index));
+                    }
+                    break;
+                case "inlineStr":
+                case "str":
+                    collector.cell(column, value.toString());
+                    break;
+                default:
+            }
+        }
+    }
+}